@@ -1,14 +1,27 @@
 package com.example.miniapp.config;
 
+import com.example.miniapp.utils.SqlCapture;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
+@EnableScheduling
 public class Config {
 
     @Bean
     public RestTemplate restTemplate() {
         return new RestTemplate();
     }
-}
\ No newline at end of file
+
+    // Only SequentialScanReporter captures SQL
+    @Bean
+    @ConditionalOnProperty(name = "query-plan-check.enabled", havingValue = "true", matchIfMissing = true)
+    public HibernatePropertiesCustomizer sqlCaptureCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlCapture());
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.miniapp.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+
+// Caffeine-backed JCache regions for Hibernate's second-level cache. Every region is
+// created here with an explicit size and TTL, and Hibernate is set to fail on any
+// region it would otherwise create with defaults.
+@Configuration
+@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.cache.use_second_level_cache", havingValue = "true")
+public class SecondLevelCacheConfig {
+
+    public static final String CAPTAINS_REGION = "captains";
+    public static final String CUSTOMERS_REGION = "customers";
+    public static final String QUERY_RESULTS_REGION = RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME;
+    public static final String UPDATE_TIMESTAMPS_REGION = RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(
+            @Value("${second-level-cache.captains.max-size:10000}") long captainsMaxSize,
+            @Value("${second-level-cache.captains.ttl-seconds:600}") long captainsTtlSeconds,
+            @Value("${second-level-cache.customers.max-size:100000}") long customersMaxSize,
+            @Value("${second-level-cache.customers.ttl-seconds:600}") long customersTtlSeconds,
+            @Value("${second-level-cache.query-results.max-size:1000}") long queryResultsMaxSize,
+            @Value("${second-level-cache.query-results.ttl-seconds:60}") long queryResultsTtlSeconds) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("miniapp-second-level-cache"), getClass().getClassLoader());
+        cacheManager.createCache(CAPTAINS_REGION, region(captainsMaxSize, captainsTtlSeconds));
+        cacheManager.createCache(CUSTOMERS_REGION, region(customersMaxSize, customersTtlSeconds));
+        cacheManager.createCache(QUERY_RESULTS_REGION, region(queryResultsMaxSize, queryResultsTtlSeconds));
+        // Holds one last-modified timestamp per table; evicting one would make cached
+        // query results look fresh, so it is never bounded or expired
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, new CaffeineConfiguration<>().setNativeStatisticsEnabled(true));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheManagerCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> {
+            properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maxSize, long ttlSeconds) {
+        return new CaffeineConfiguration<>()
+                .setMaximumSize(OptionalLong.of(maxSize))
+                .setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)))
+                .setNativeStatisticsEnabled(true);
+    }
+}
@@ -1,9 +1,17 @@
 package com.example.miniapp.controllers;
 
+import com.example.miniapp.models.CacheStatistics;
 import com.example.miniapp.models.Captain;
+import com.example.miniapp.models.CaptainReputation;
+import com.example.miniapp.models.CaptainStatistics;
+import com.example.miniapp.models.CursorPage;
+import com.example.miniapp.models.KeyFilterStatistics;
 import com.example.miniapp.services.CaptainService;
+import com.example.miniapp.utils.NdjsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -11,10 +19,12 @@ import java.util.List;
 @RequestMapping("/captain")
 public class CaptainController {
     private final CaptainService captainService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public CaptainController(CaptainService captainService) {
+    public CaptainController(CaptainService captainService, ObjectMapper objectMapper) {
         this.captainService = captainService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/addCaptain")
@@ -27,6 +37,17 @@ public class CaptainController {
         return captainService.getAllCaptains();
     }
 
+    @GetMapping("/allCaptains/page")
+    public CursorPage<Captain> getCaptainsPage(@RequestParam(required = false) Long after,
+                                               @RequestParam(defaultValue = "100") int size) {
+        return captainService.getCaptainsPage(after, size);
+    }
+
+    @GetMapping(value = "/allCaptains/stream", produces = NdjsonWriter.MEDIA_TYPE)
+    public StreamingResponseBody streamAllCaptains() {
+        return out -> captainService.streamAllCaptains(new NdjsonWriter(objectMapper, out));
+    }
+
     @GetMapping("/{id}")
     public Captain getCaptainById(@PathVariable Long id) {
         return captainService.getCaptainById(id);
@@ -37,8 +58,43 @@ public class CaptainController {
         return captainService.getCaptainsByRating(ratingThreshold);
     }
 
+    @GetMapping("/top")
+    public List<Captain> getTopCaptains(@RequestParam(defaultValue = "10") int k) {
+        return captainService.getTopCaptains(k);
+    }
+
     @GetMapping("/filterByLicenseNumber")
     public Captain getCaptainByLicenseNumber(@RequestParam String licenseNumber) {
         return captainService.getCaptainByLicenseNumber(licenseNumber);
     }
+
+    @GetMapping("/{id}/reputation")
+    public CaptainReputation getCaptainReputation(@PathVariable Long id) {
+        return captainService.getCaptainReputation(id);
+    }
+
+    @GetMapping("/{id}/stats")
+    public CaptainStatistics getCaptainStatistics(@PathVariable Long id) {
+        return captainService.getCaptainStatistics(id);
+    }
+
+    @DeleteMapping("/delete/{id}")
+    public String deleteCaptain(@PathVariable Long id) {
+        return captainService.deleteCaptain(id);
+    }
+
+    @PostMapping("/bulkDelete")
+    public int deleteCaptains(@RequestBody List<Long> ids) {
+        return captainService.deleteCaptains(ids);
+    }
+
+    @GetMapping("/cacheStats")
+    public List<CacheStatistics> getCacheStatistics() {
+        return captainService.getCacheStatistics();
+    }
+
+    @GetMapping("/licenseFilterStats")
+    public KeyFilterStatistics getLicenseFilterStatistics() {
+        return captainService.getLicenseFilterStatistics();
+    }
 }
\ No newline at end of file
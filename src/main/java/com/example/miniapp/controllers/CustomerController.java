@@ -2,21 +2,33 @@ package com.example.miniapp.controllers;
 
 import org.springframework.web.bind.annotation.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.List;
 import java.util.Optional;
 
 import com.example.miniapp.services.CustomerService;
+import com.example.miniapp.models.CacheStatistics;
+import com.example.miniapp.models.CursorPage;
 import com.example.miniapp.models.Customer;
+import com.example.miniapp.models.CustomerTripSummary;
+import com.example.miniapp.models.KeyFilterStatistics;
+import com.example.miniapp.utils.NdjsonWriter;
 
 @RestController
 @RequestMapping("/customer")
 public class CustomerController {
 
     private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService, ObjectMapper objectMapper) {
         this.customerService = customerService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/addCustomer")
@@ -29,28 +41,93 @@ public class CustomerController {
         return customerService.getAllCustomers();
     }
 
+    @GetMapping("/allCustomers/page")
+    public CursorPage<Customer> getCustomersPage(@RequestParam(required = false) Long after,
+                                                 @RequestParam(defaultValue = "100") int size) {
+        return customerService.getCustomersPage(after, size);
+    }
+
+    @GetMapping(value = "/allCustomers/stream", produces = NdjsonWriter.MEDIA_TYPE)
+    public StreamingResponseBody streamAllCustomers() {
+        return out -> customerService.streamAllCustomers(new NdjsonWriter(objectMapper, out));
+    }
+
     @GetMapping("/{id}")
     public Customer getCustomerById(@PathVariable Long id) {
         return customerService.getCustomerById(id);
     }
 
+    @GetMapping("/{id}/summary")
+    public CustomerTripSummary getCustomerSummary(@PathVariable Long id) {
+        return customerService.getCustomerSummary(id);
+    }
+
+    @PostMapping("/rebuildSummaries")
+    public int rebuildCustomerSummaries() {
+        return customerService.rebuildCustomerSummaries();
+    }
+
     @PutMapping("/update/{id}")
     public Customer updateCustomer(@PathVariable Long id, @RequestBody Customer customer) {
         return customerService.updateCustomer(id, customer);
     }
 
+    @PatchMapping("/update/{id}")
+    public int patchCustomer(@PathVariable Long id, @RequestBody Customer customer) {
+        return customerService.patchCustomer(id, customer);
+    }
+
     @DeleteMapping("/delete/{id}")
     public String deleteCustomer(@PathVariable Long id) {
         return customerService.deleteCustomer(id);
     }
 
+    @PostMapping("/bulkDelete")
+    public int deleteCustomers(@RequestBody List<Long> ids) {
+        return customerService.deleteCustomers(ids);
+    }
+
+    // Only the first page; when there are more, the Link header points to the next one
+    // on /findByEmailDomain/page
     @GetMapping("/findByEmailDomain")
-    public List<Customer> findCustomersByEmailDomain(@RequestParam String domain) {
-        return customerService.findCustomersByEmailDomain(domain);
+    public ResponseEntity<List<Customer>> findCustomersByEmailDomain(@RequestParam String domain) {
+        CursorPage<Customer> page = customerService.getCustomersByEmailDomainPage(domain, null,
+                CursorPage.MAX_PAGE_SIZE);
+        if (page.getNextCursor() == null) {
+            return ResponseEntity.ok(page.getItems());
+        }
+        String next = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/customer/findByEmailDomain/page")
+                .queryParam("domain", domain)
+                .queryParam("after", page.getNextCursor())
+                .queryParam("size", CursorPage.MAX_PAGE_SIZE)
+                .encode()
+                .toUriString();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(page.getItems());
+    }
+
+    @GetMapping("/findByEmailDomain/page")
+    public CursorPage<Customer> findCustomersByEmailDomainPage(@RequestParam String domain,
+                                                               @RequestParam(required = false) Long after,
+                                                               @RequestParam(defaultValue = "100") int size) {
+        return customerService.getCustomersByEmailDomainPage(domain, after, size);
     }
 
     @GetMapping("/findByPhonePrefix")
-    public List<Customer> findCustomersByPhonePrefix(@RequestParam String prefix) {
-        return customerService.findCustomersByPhonePrefix(prefix);
+    public List<Customer> findCustomersByPhonePrefix(@RequestParam String prefix,
+                                                     @RequestParam(defaultValue = "100") int limit) {
+        return customerService.findCustomersByPhonePrefix(prefix, limit);
+    }
+
+    @GetMapping("/cacheStats")
+    public List<CacheStatistics> getCacheStatistics() {
+        return customerService.getCacheStatistics();
+    }
+
+    @GetMapping("/emailFilterStats")
+    public KeyFilterStatistics getEmailFilterStatistics() {
+        return customerService.getEmailFilterStatistics();
     }
 }
@@ -1,11 +1,15 @@
 package com.example.miniapp.controllers;
 
+import com.example.miniapp.models.CursorPage;
 import com.example.miniapp.models.Payment;
 import com.example.miniapp.services.PaymentService;
+import com.example.miniapp.utils.NdjsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -15,10 +19,12 @@ import java.util.List;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, ObjectMapper objectMapper) {
         this.paymentService = paymentService;
+        this.objectMapper = objectMapper;
     }
 
 
@@ -39,6 +45,21 @@ public class PaymentController {
         return new ResponseEntity<>(payments, HttpStatus.OK);
     }
 
+
+    @GetMapping("/allPayments/page")
+    public ResponseEntity<CursorPage<Payment>> getPaymentsPage(@RequestParam(required = false) Long after,
+                                                   @RequestParam(defaultValue = "100") int size) {
+        CursorPage<Payment> page = paymentService.getPaymentsPage(after, size);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
+
+    @GetMapping(value = "/allPayments/stream", produces = NdjsonWriter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> streamAllPayments() {
+        StreamingResponseBody body = out -> paymentService.streamAllPayments(new NdjsonWriter(objectMapper, out));
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Payment> getPaymentById(@PathVariable Long id) {
         try {
@@ -63,6 +84,16 @@ public class PaymentController {
     }
 
 
+    @PatchMapping("/update/{id}")
+    public ResponseEntity<Integer> patchPayment(@PathVariable Long id, @RequestBody Payment payment) {
+        try {
+            return new ResponseEntity<>(paymentService.patchPayment(id, payment), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+
     @DeleteMapping("/delete/{id}")
     public ResponseEntity<String> deletePayment(@PathVariable Long id) {
         try {
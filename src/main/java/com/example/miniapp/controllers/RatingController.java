@@ -1,11 +1,18 @@
 package com.example.miniapp.controllers;
 
+import com.example.miniapp.models.BulkResult;
+import com.example.miniapp.models.CursorPage;
+import com.example.miniapp.models.PropagationStatus;
 import com.example.miniapp.models.Rating;
+import com.example.miniapp.models.RatingStats;
 import com.example.miniapp.services.RatingService;
+import com.example.miniapp.utils.NdjsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -16,10 +23,12 @@ import java.util.NoSuchElementException;
 public class RatingController {
 
     private final RatingService ratingService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public RatingController(RatingService ratingService) {
+    public RatingController(RatingService ratingService, ObjectMapper objectMapper) {
         this.ratingService = ratingService;
+        this.objectMapper = objectMapper;
     }
 
 
@@ -34,6 +43,17 @@ public class RatingController {
     }
 
 
+    @PostMapping("/bulk")
+    public ResponseEntity<BulkResult> addRatings(@RequestBody List<Rating> ratings) {
+        try {
+            BulkResult result = ratingService.addRatings(ratings);
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+
     @PutMapping("/update/{id}")
     public ResponseEntity<Rating> updateRating(@PathVariable String id, @RequestBody Rating updatedRating) {
         try {
@@ -89,6 +109,21 @@ public class RatingController {
     }
 
 
+    @GetMapping("/allRatings/page")
+    public ResponseEntity<CursorPage<Rating>> getRatingsPage(@RequestParam(required = false) String after,
+                                                   @RequestParam(defaultValue = "100") int size) {
+        CursorPage<Rating> page = ratingService.getRatingsPage(after, size);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
+
+    @GetMapping(value = "/allRatings/stream", produces = NdjsonWriter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> streamAllRatings() {
+        StreamingResponseBody body = out -> ratingService.streamAllRatings(new NdjsonWriter(objectMapper, out));
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+
     @GetMapping("/{id}")
     public ResponseEntity<Rating> getRatingById(@PathVariable String id) {
         try {
@@ -109,4 +144,36 @@ public class RatingController {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
     }
+
+
+    @GetMapping("/stats")
+    public ResponseEntity<List<RatingStats>> getRatingStats(
+            @RequestParam(required = false) Long entityId,
+            @RequestParam String entityType) {
+        try {
+            List<RatingStats> stats = ratingService.getRatingStats(entityId, entityType);
+            return new ResponseEntity<>(stats, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+
+    @GetMapping("/summary")
+    public ResponseEntity<List<RatingStats>> getRatingSummaries(
+            @RequestParam(required = false) Long entityId,
+            @RequestParam String entityType) {
+        try {
+            List<RatingStats> summaries = ratingService.getRatingSummaries(entityId, entityType);
+            return new ResponseEntity<>(summaries, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+
+    @GetMapping("/propagationStatus")
+    public ResponseEntity<PropagationStatus> getPropagationStatus() {
+        return new ResponseEntity<>(ratingService.getPropagationStatus(), HttpStatus.OK);
+    }
 }
\ No newline at end of file
@@ -1,16 +1,32 @@
 package com.example.miniapp.controllers;
 
+import com.example.miniapp.models.BulkResult;
+import com.example.miniapp.models.CursorPage;
 import com.example.miniapp.models.Trip;
+import com.example.miniapp.models.TripPartition;
+import com.example.miniapp.models.TripSummary;
+import com.example.miniapp.models.TripVolumeBucket;
+import com.example.miniapp.services.TripBulkImporter;
+import com.example.miniapp.services.TripHistogram;
+import com.example.miniapp.services.TripPartitionManager;
 import com.example.miniapp.services.TripService;
+import com.example.miniapp.utils.NdjsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
 
 
 @RestController
@@ -18,10 +34,20 @@ import java.util.List;
 public class TripController {
 
     private final TripService tripService;
+    private final TripBulkImporter tripBulkImporter;
+    private final TripPartitionManager tripPartitionManager;
+    private final TripHistogram tripHistogram;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public TripController(TripService tripService) {
+    public TripController(TripService tripService, TripBulkImporter tripBulkImporter,
+                          TripPartitionManager tripPartitionManager, TripHistogram tripHistogram,
+                          ObjectMapper objectMapper) {
         this.tripService = tripService;
+        this.tripBulkImporter = tripBulkImporter;
+        this.tripPartitionManager = tripPartitionManager;
+        this.tripHistogram = tripHistogram;
+        this.objectMapper = objectMapper;
     }
 
 
@@ -36,13 +62,45 @@ public class TripController {
     }
 
 
+    // Trip file as a JSON array, NDJSON or CSV; items of the result list only the failed rows
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, NdjsonWriter.MEDIA_TYPE, "text/csv"})
+    public ResponseEntity<BulkResult> addTrips(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                               InputStream body) {
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            TripBulkImporter.Format format = mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)
+                    ? TripBulkImporter.Format.JSON
+                    : "csv".equals(mediaType.getSubtype()) ? TripBulkImporter.Format.CSV : TripBulkImporter.Format.NDJSON;
+            BulkResult result = tripBulkImporter.importTrips(body, format);
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+
     @GetMapping("/allTrips")
-    public ResponseEntity<List<Trip>> getAllTrips() {
-        List<Trip> trips = tripService.getAllTrips();
+    public ResponseEntity<List<TripSummary>> getAllTrips() {
+        List<TripSummary> trips = tripService.getAllTrips();
         return new ResponseEntity<>(trips, HttpStatus.OK);
     }
 
 
+    @GetMapping("/allTrips/page")
+    public ResponseEntity<CursorPage<Trip>> getTripsPage(@RequestParam(required = false) Long after,
+                                                   @RequestParam(defaultValue = "100") int size) {
+        CursorPage<Trip> page = tripService.getTripsPage(after, size);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
+
+    @GetMapping(value = "/allTrips/stream", produces = NdjsonWriter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> streamAllTrips() {
+        StreamingResponseBody body = out -> tripService.streamAllTrips(new NdjsonWriter(objectMapper, out));
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+
     @GetMapping("/{id}")
     public ResponseEntity<Trip> getTripById(@PathVariable Long id) {
         try {
@@ -67,6 +125,16 @@ public class TripController {
     }
 
 
+    @PatchMapping("/update/{id}")
+    public ResponseEntity<Integer> patchTrip(@PathVariable Long id, @RequestBody Trip trip) {
+        try {
+            return new ResponseEntity<>(tripService.patchTrip(id, trip), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+
     @DeleteMapping("/delete/{id}")
     public ResponseEntity<String> deleteTrip(@PathVariable Long id) {
         try {
@@ -74,16 +142,18 @@ public class TripController {
             return new ResponseEntity<>("Trip with ID: " + id + " has been deleted successfully", HttpStatus.OK);
         } catch (EntityNotFoundException e) {
             return new ResponseEntity<>("Trip with ID: " + id + " not found", HttpStatus.NOT_FOUND);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         }
     }
 
 
     @GetMapping("/findByDateRange")
-    public ResponseEntity<List<Trip>> findTripsWithinDateRange(
+    public ResponseEntity<List<TripSummary>> findTripsWithinDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
         try {
-            List<Trip> trips = tripService.findTripsWithinDateRange(startDate, endDate);
+            List<TripSummary> trips = tripService.findTripsWithinDateRange(startDate, endDate);
             return new ResponseEntity<>(trips, HttpStatus.OK);
         } catch (IllegalArgumentException e) {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
@@ -92,12 +162,46 @@ public class TripController {
 
 
     @GetMapping("/findByCaptainId")
-    public ResponseEntity<List<Trip>> findTripsByCaptainId(@RequestParam Long captainId) {
+    public ResponseEntity<List<TripSummary>> findTripsByCaptainId(@RequestParam Long captainId) {
         try {
-            List<Trip> trips = tripService.findTripsByCaptainId(captainId);
+            List<TripSummary> trips = tripService.findTripsByCaptainId(captainId);
             return new ResponseEntity<>(trips, HttpStatus.OK);
         } catch (IllegalArgumentException e) {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
     }
+
+
+    @GetMapping("/histogram")
+    public ResponseEntity<List<TripVolumeBucket>> getHistogram(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "hour") String bucket) {
+        try {
+            TripHistogram.Bucket size = TripHistogram.Bucket.valueOf(bucket.toUpperCase(Locale.ROOT));
+            List<TripVolumeBucket> histogram = tripHistogram.getHistogram(start, end, size);
+            return new ResponseEntity<>(histogram, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+
+    @GetMapping("/partitions")
+    public ResponseEntity<List<TripPartition>> getPartitions() {
+        List<TripPartition> partitions = tripPartitionManager.getPartitions();
+        return new ResponseEntity<>(partitions, HttpStatus.OK);
+    }
+
+
+    @PostMapping("/partitions/detach")
+    public ResponseEntity<List<TripPartition>> detachPartitions(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate before) {
+        try {
+            List<TripPartition> detached = tripPartitionManager.detachPartitionsBefore(before);
+            return new ResponseEntity<>(detached, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
 }
\ No newline at end of file
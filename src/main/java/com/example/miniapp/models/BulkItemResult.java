@@ -0,0 +1,80 @@
+package com.example.miniapp.models;
+
+
+// Outcome of a single item of a bulk request, identified by its position in the batch
+public class BulkItemResult {
+
+    private int index;
+
+    private String id;
+
+    private boolean success;
+
+    private String error;
+
+
+    public BulkItemResult() {
+    }
+
+
+    public BulkItemResult(int index, String id, boolean success, String error) {
+        this.index = index;
+        this.id = id;
+        this.success = success;
+        this.error = error;
+    }
+
+
+    public static BulkItemResult succeeded(int index, String id) {
+        return new BulkItemResult(index, id, true, null);
+    }
+
+
+    public static BulkItemResult failed(int index, String error) {
+        return new BulkItemResult(index, null, false, error);
+    }
+
+
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkItemResult{" +
+                "index=" + index +
+                ", id='" + id + '\'' +
+                ", success=" + success +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.miniapp.models;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+
+// Summary of a bulk request with one BulkItemResult per submitted item, or only per
+// failed item for imports too large to echo back
+public class BulkResult {
+
+    private int received;
+
+    private int succeeded;
+
+    private int failed;
+
+    private List<BulkItemResult> items = new ArrayList<>();
+
+    private long elapsedMillis;
+
+    private double itemsPerSecond;
+
+
+    public BulkResult() {
+    }
+
+
+    public BulkResult(List<BulkItemResult> items) {
+        this.items = new ArrayList<>(items);
+        this.items.sort(Comparator.comparingInt(BulkItemResult::getIndex));
+        this.received = items.size();
+        this.succeeded = (int) items.stream().filter(BulkItemResult::isSuccess).count();
+        this.failed = this.received - this.succeeded;
+    }
+
+
+    public BulkResult(int received, List<BulkItemResult> failures) {
+        this.items = new ArrayList<>(failures);
+        this.items.sort(Comparator.comparingInt(BulkItemResult::getIndex));
+        this.received = received;
+        this.failed = failures.size();
+        this.succeeded = received - this.failed;
+    }
+
+
+    public void recordElapsed(long elapsedNanos) {
+        this.elapsedMillis = elapsedNanos / 1_000_000;
+        this.itemsPerSecond = elapsedNanos > 0 ? received * 1_000_000_000.0 / elapsedNanos : 0;
+    }
+
+
+
+    public int getReceived() {
+        return received;
+    }
+
+    public void setReceived(int received) {
+        this.received = received;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public void setSucceeded(int succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<BulkItemResult> getItems() {
+        return items;
+    }
+
+    public void setItems(List<BulkItemResult> items) {
+        this.items = items;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getItemsPerSecond() {
+        return itemsPerSecond;
+    }
+
+    public void setItemsPerSecond(double itemsPerSecond) {
+        this.itemsPerSecond = itemsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkResult{" +
+                "received=" + received +
+                ", succeeded=" + succeeded +
+                ", failed=" + failed +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+}
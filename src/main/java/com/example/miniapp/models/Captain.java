@@ -1,17 +1,25 @@
 package com.example.miniapp.models;
 
+import com.example.miniapp.config.SecondLevelCacheConfig;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
 
 @Entity
-@Table(name = "captains")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.CAPTAINS_REGION)
+@Table(name = "captains", indexes = {
+        @Index(name = "idx_captains_avg_rating_score", columnList = "avg_rating_score")
+})
 public class Captain {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "captains_seq")
+    @SequenceGenerator(name = "captains_seq", sequenceName = "captains_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
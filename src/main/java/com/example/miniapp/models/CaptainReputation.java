@@ -0,0 +1,70 @@
+package com.example.miniapp.models;
+
+
+// A captain's plain all-time average next to the time-decayed reputation score
+public class CaptainReputation {
+
+    private Long captainId;
+
+    private Double avgRatingScore;
+
+    private Double decayedRatingScore;
+
+    private long ratingCount;
+
+
+    public CaptainReputation() {
+    }
+
+
+    public CaptainReputation(Long captainId, Double avgRatingScore, Double decayedRatingScore, long ratingCount) {
+        this.captainId = captainId;
+        this.avgRatingScore = avgRatingScore;
+        this.decayedRatingScore = decayedRatingScore;
+        this.ratingCount = ratingCount;
+    }
+
+
+
+    public Long getCaptainId() {
+        return captainId;
+    }
+
+    public void setCaptainId(Long captainId) {
+        this.captainId = captainId;
+    }
+
+    public Double getAvgRatingScore() {
+        return avgRatingScore;
+    }
+
+    public void setAvgRatingScore(Double avgRatingScore) {
+        this.avgRatingScore = avgRatingScore;
+    }
+
+    public Double getDecayedRatingScore() {
+        return decayedRatingScore;
+    }
+
+    public void setDecayedRatingScore(Double decayedRatingScore) {
+        this.decayedRatingScore = decayedRatingScore;
+    }
+
+    public long getRatingCount() {
+        return ratingCount;
+    }
+
+    public void setRatingCount(long ratingCount) {
+        this.ratingCount = ratingCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CaptainReputation{" +
+                "captainId=" + captainId +
+                ", avgRatingScore=" + avgRatingScore +
+                ", decayedRatingScore=" + decayedRatingScore +
+                ", ratingCount=" + ratingCount +
+                '}';
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.miniapp.models;
+
+import java.time.LocalDateTime;
+
+
+// Trip and earnings rollup of one captain
+public class CaptainStatistics {
+
+    private Long captainId;
+
+    private long tripCount;
+
+    private double totalTripCost;
+
+    private Double averageTripCost;
+
+    private LocalDateTime lastTripDate;
+
+    private long paidTripCount;
+
+    // Share of the captain's trips whose payment is marked as paid
+    private Double paymentCompletionRatio;
+
+
+    public CaptainStatistics() {
+    }
+
+
+    public CaptainStatistics(Long captainId, long tripCount, double totalTripCost, LocalDateTime lastTripDate,
+                             long paidTripCount) {
+        this.captainId = captainId;
+        this.tripCount = tripCount;
+        this.totalTripCost = totalTripCost;
+        this.averageTripCost = tripCount > 0 ? totalTripCost / tripCount : null;
+        this.lastTripDate = lastTripDate;
+        this.paidTripCount = paidTripCount;
+        this.paymentCompletionRatio = tripCount > 0 ? (double) paidTripCount / tripCount : null;
+    }
+
+
+
+    public Long getCaptainId() {
+        return captainId;
+    }
+
+    public void setCaptainId(Long captainId) {
+        this.captainId = captainId;
+    }
+
+    public long getTripCount() {
+        return tripCount;
+    }
+
+    public void setTripCount(long tripCount) {
+        this.tripCount = tripCount;
+    }
+
+    public double getTotalTripCost() {
+        return totalTripCost;
+    }
+
+    public void setTotalTripCost(double totalTripCost) {
+        this.totalTripCost = totalTripCost;
+    }
+
+    public Double getAverageTripCost() {
+        return averageTripCost;
+    }
+
+    public void setAverageTripCost(Double averageTripCost) {
+        this.averageTripCost = averageTripCost;
+    }
+
+    public LocalDateTime getLastTripDate() {
+        return lastTripDate;
+    }
+
+    public void setLastTripDate(LocalDateTime lastTripDate) {
+        this.lastTripDate = lastTripDate;
+    }
+
+    public long getPaidTripCount() {
+        return paidTripCount;
+    }
+
+    public void setPaidTripCount(long paidTripCount) {
+        this.paidTripCount = paidTripCount;
+    }
+
+    public Double getPaymentCompletionRatio() {
+        return paymentCompletionRatio;
+    }
+
+    public void setPaymentCompletionRatio(Double paymentCompletionRatio) {
+        this.paymentCompletionRatio = paymentCompletionRatio;
+    }
+
+    @Override
+    public String toString() {
+        return "CaptainStatistics{" +
+                "captainId=" + captainId +
+                ", tripCount=" + tripCount +
+                ", totalTripCost=" + totalTripCost +
+                ", lastTripDate=" + lastTripDate +
+                ", paidTripCount=" + paidTripCount +
+                '}';
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.miniapp.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+// One page of a keyset-paginated listing. Pass nextCursor back as "after" to get the
+// following page; it is null on the last page.
+public class CursorPage<T> {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private List<T> items = new ArrayList<>();
+
+    private String nextCursor;
+
+
+    public CursorPage() {
+    }
+
+
+    public CursorPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+
+
+    public static int pageSize(int requested) {
+        return Math.max(1, Math.min(requested, MAX_PAGE_SIZE));
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
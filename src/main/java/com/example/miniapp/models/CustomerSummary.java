@@ -0,0 +1,117 @@
+package com.example.miniapp.models;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+// Running trip totals of one customer, maintained with atomic $inc updates
+@Document(collection = "customer_summaries")
+public class CustomerSummary {
+
+    // The customer id
+    @Id
+    private Long id;
+
+    private long tripCount;
+
+    private double totalTripCost;
+
+    // Sum of the amounts of the customer's paid payments
+    private double totalPaid;
+
+    private LocalDateTime firstTripDate;
+
+    private LocalDateTime lastTripDate;
+
+    // Trips per origin / destination; keys are escaped so they are valid field names
+    private Map<String, Long> origins = new LinkedHashMap<>();
+
+    private Map<String, Long> destinations = new LinkedHashMap<>();
+
+
+    public CustomerSummary() {
+        // Required by MongoDB
+    }
+
+
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public long getTripCount() {
+        return tripCount;
+    }
+
+    public void setTripCount(long tripCount) {
+        this.tripCount = tripCount;
+    }
+
+    public double getTotalTripCost() {
+        return totalTripCost;
+    }
+
+    public void setTotalTripCost(double totalTripCost) {
+        this.totalTripCost = totalTripCost;
+    }
+
+    public double getTotalPaid() {
+        return totalPaid;
+    }
+
+    public void setTotalPaid(double totalPaid) {
+        this.totalPaid = totalPaid;
+    }
+
+    public LocalDateTime getFirstTripDate() {
+        return firstTripDate;
+    }
+
+    public void setFirstTripDate(LocalDateTime firstTripDate) {
+        this.firstTripDate = firstTripDate;
+    }
+
+    public LocalDateTime getLastTripDate() {
+        return lastTripDate;
+    }
+
+    public void setLastTripDate(LocalDateTime lastTripDate) {
+        this.lastTripDate = lastTripDate;
+    }
+
+    public Map<String, Long> getOrigins() {
+        return origins;
+    }
+
+    public void setOrigins(Map<String, Long> origins) {
+        this.origins = origins;
+    }
+
+    public Map<String, Long> getDestinations() {
+        return destinations;
+    }
+
+    public void setDestinations(Map<String, Long> destinations) {
+        this.destinations = destinations;
+    }
+
+    @Override
+    public String toString() {
+        return "CustomerSummary{" +
+                "id=" + id +
+                ", tripCount=" + tripCount +
+                ", totalTripCost=" + totalTripCost +
+                ", totalPaid=" + totalPaid +
+                ", firstTripDate=" + firstTripDate +
+                ", lastTripDate=" + lastTripDate +
+                '}';
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.miniapp.models;
+
+import java.time.LocalDateTime;
+
+
+// Lifetime value and trip history of one customer
+public class CustomerTripSummary {
+
+    private Long customerId;
+
+    private long tripCount;
+
+    private double totalTripCost;
+
+    private Double averageTripCost;
+
+    private double totalPaid;
+
+    private LocalDateTime firstTripDate;
+
+    private LocalDateTime lastTripDate;
+
+    private String topOrigin;
+
+    private String topDestination;
+
+
+    public CustomerTripSummary() {
+    }
+
+
+    public CustomerTripSummary(Long customerId, long tripCount, double totalTripCost, double totalPaid,
+                               LocalDateTime firstTripDate, LocalDateTime lastTripDate,
+                               String topOrigin, String topDestination) {
+        this.customerId = customerId;
+        this.tripCount = tripCount;
+        this.totalTripCost = totalTripCost;
+        this.averageTripCost = tripCount > 0 ? totalTripCost / tripCount : null;
+        this.totalPaid = totalPaid;
+        this.firstTripDate = firstTripDate;
+        this.lastTripDate = lastTripDate;
+        this.topOrigin = topOrigin;
+        this.topDestination = topDestination;
+    }
+
+
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Long customerId) {
+        this.customerId = customerId;
+    }
+
+    public long getTripCount() {
+        return tripCount;
+    }
+
+    public void setTripCount(long tripCount) {
+        this.tripCount = tripCount;
+    }
+
+    public double getTotalTripCost() {
+        return totalTripCost;
+    }
+
+    public void setTotalTripCost(double totalTripCost) {
+        this.totalTripCost = totalTripCost;
+    }
+
+    public Double getAverageTripCost() {
+        return averageTripCost;
+    }
+
+    public void setAverageTripCost(Double averageTripCost) {
+        this.averageTripCost = averageTripCost;
+    }
+
+    public double getTotalPaid() {
+        return totalPaid;
+    }
+
+    public void setTotalPaid(double totalPaid) {
+        this.totalPaid = totalPaid;
+    }
+
+    public LocalDateTime getFirstTripDate() {
+        return firstTripDate;
+    }
+
+    public void setFirstTripDate(LocalDateTime firstTripDate) {
+        this.firstTripDate = firstTripDate;
+    }
+
+    public LocalDateTime getLastTripDate() {
+        return lastTripDate;
+    }
+
+    public void setLastTripDate(LocalDateTime lastTripDate) {
+        this.lastTripDate = lastTripDate;
+    }
+
+    public String getTopOrigin() {
+        return topOrigin;
+    }
+
+    public void setTopOrigin(String topOrigin) {
+        this.topOrigin = topOrigin;
+    }
+
+    public String getTopDestination() {
+        return topDestination;
+    }
+
+    public void setTopDestination(String topDestination) {
+        this.topDestination = topDestination;
+    }
+
+    @Override
+    public String toString() {
+        return "CustomerTripSummary{" +
+                "customerId=" + customerId +
+                ", tripCount=" + tripCount +
+                ", totalTripCost=" + totalTripCost +
+                ", totalPaid=" + totalPaid +
+                ", firstTripDate=" + firstTripDate +
+                ", lastTripDate=" + lastTripDate +
+                ", topOrigin='" + topOrigin + '\'' +
+                ", topDestination='" + topDestination + '\'' +
+                '}';
+    }
+}
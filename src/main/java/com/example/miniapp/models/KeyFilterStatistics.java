@@ -0,0 +1,142 @@
+package com.example.miniapp.models;
+
+
+// Sizing and effectiveness of one unique-key Bloom filter
+public class KeyFilterStatistics {
+
+    private String name;
+
+    private long keys;
+
+    private long expectedKeys;
+
+    private long bitCount;
+
+    private int hashFunctions;
+
+    private long memoryBytes;
+
+    private double expectedFalsePositiveRate;
+
+    // Existence queries skipped because the filter proved the key new
+    private long skippedQueries;
+
+    // Keys the filter reported as possibly present that turned out to be new
+    private long falsePositives;
+
+    private long duplicatesFound;
+
+
+    public KeyFilterStatistics() {
+    }
+
+
+    public KeyFilterStatistics(String name, long keys, long expectedKeys, long bitCount, int hashFunctions,
+                               long memoryBytes, double expectedFalsePositiveRate, long skippedQueries,
+                               long falsePositives, long duplicatesFound) {
+        this.name = name;
+        this.keys = keys;
+        this.expectedKeys = expectedKeys;
+        this.bitCount = bitCount;
+        this.hashFunctions = hashFunctions;
+        this.memoryBytes = memoryBytes;
+        this.expectedFalsePositiveRate = expectedFalsePositiveRate;
+        this.skippedQueries = skippedQueries;
+        this.falsePositives = falsePositives;
+        this.duplicatesFound = duplicatesFound;
+    }
+
+
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getKeys() {
+        return keys;
+    }
+
+    public void setKeys(long keys) {
+        this.keys = keys;
+    }
+
+    public long getExpectedKeys() {
+        return expectedKeys;
+    }
+
+    public void setExpectedKeys(long expectedKeys) {
+        this.expectedKeys = expectedKeys;
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public void setBitCount(long bitCount) {
+        this.bitCount = bitCount;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    public void setHashFunctions(int hashFunctions) {
+        this.hashFunctions = hashFunctions;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public void setMemoryBytes(long memoryBytes) {
+        this.memoryBytes = memoryBytes;
+    }
+
+    public double getExpectedFalsePositiveRate() {
+        return expectedFalsePositiveRate;
+    }
+
+    public void setExpectedFalsePositiveRate(double expectedFalsePositiveRate) {
+        this.expectedFalsePositiveRate = expectedFalsePositiveRate;
+    }
+
+    public long getSkippedQueries() {
+        return skippedQueries;
+    }
+
+    public void setSkippedQueries(long skippedQueries) {
+        this.skippedQueries = skippedQueries;
+    }
+
+    public long getFalsePositives() {
+        return falsePositives;
+    }
+
+    public void setFalsePositives(long falsePositives) {
+        this.falsePositives = falsePositives;
+    }
+
+    public long getDuplicatesFound() {
+        return duplicatesFound;
+    }
+
+    public void setDuplicatesFound(long duplicatesFound) {
+        this.duplicatesFound = duplicatesFound;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyFilterStatistics{" +
+                "name='" + name + '\'' +
+                ", keys=" + keys +
+                ", memoryBytes=" + memoryBytes +
+                ", expectedFalsePositiveRate=" + expectedFalsePositiveRate +
+                ", skippedQueries=" + skippedQueries +
+                ", falsePositives=" + falsePositives +
+                '}';
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.miniapp.models;
+
+import java.time.LocalDateTime;
+
+
+// Snapshot of the background captain rating propagation queue
+public class PropagationStatus {
+
+    private int queueDepth;
+
+    // Age of the oldest captain still waiting to be flushed
+    private long flushLagMillis;
+
+    private LocalDateTime lastFlushAt;
+
+    private int lastFlushSize;
+
+    private long totalFlushed;
+
+    private long failedFlushes;
+
+
+    public PropagationStatus() {
+    }
+
+
+    public PropagationStatus(int queueDepth, long flushLagMillis, LocalDateTime lastFlushAt, int lastFlushSize,
+                             long totalFlushed, long failedFlushes) {
+        this.queueDepth = queueDepth;
+        this.flushLagMillis = flushLagMillis;
+        this.lastFlushAt = lastFlushAt;
+        this.lastFlushSize = lastFlushSize;
+        this.totalFlushed = totalFlushed;
+        this.failedFlushes = failedFlushes;
+    }
+
+
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public long getFlushLagMillis() {
+        return flushLagMillis;
+    }
+
+    public void setFlushLagMillis(long flushLagMillis) {
+        this.flushLagMillis = flushLagMillis;
+    }
+
+    public LocalDateTime getLastFlushAt() {
+        return lastFlushAt;
+    }
+
+    public void setLastFlushAt(LocalDateTime lastFlushAt) {
+        this.lastFlushAt = lastFlushAt;
+    }
+
+    public int getLastFlushSize() {
+        return lastFlushSize;
+    }
+
+    public void setLastFlushSize(int lastFlushSize) {
+        this.lastFlushSize = lastFlushSize;
+    }
+
+    public long getTotalFlushed() {
+        return totalFlushed;
+    }
+
+    public void setTotalFlushed(long totalFlushed) {
+        this.totalFlushed = totalFlushed;
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes;
+    }
+
+    public void setFailedFlushes(long failedFlushes) {
+        this.failedFlushes = failedFlushes;
+    }
+
+    @Override
+    public String toString() {
+        return "PropagationStatus{" +
+                "queueDepth=" + queueDepth +
+                ", flushLagMillis=" + flushLagMillis +
+                ", lastFlushAt=" + lastFlushAt +
+                ", lastFlushSize=" + lastFlushSize +
+                ", totalFlushed=" + totalFlushed +
+                ", failedFlushes=" + failedFlushes +
+                '}';
+    }
+}
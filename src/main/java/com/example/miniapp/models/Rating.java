@@ -1,6 +1,8 @@
 package com.example.miniapp.models;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -8,6 +10,8 @@ import java.util.Objects;
 
 
 @Document(collection = "ratings")
+@CompoundIndex(name = "entity_type_entity_id_rating_date", def = "{'entityType': 1, 'entityId': 1, 'ratingDate': -1}")
+@CompoundIndex(name = "entity_type_score", def = "{'entityType': 1, 'score': 1}")
 public class Rating {
 
     @Id
@@ -17,6 +21,9 @@ public class Rating {
 
     private String entityType;
 
+    // findByScoreGreaterThanEqual/findByScoreBetween have no entityType predicate,
+    // so they cannot use the (entityType, score) prefix
+    @Indexed(name = "score")
     private Integer score;
 
     private String comment;
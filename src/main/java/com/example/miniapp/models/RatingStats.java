@@ -0,0 +1,135 @@
+package com.example.miniapp.models;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+// Server-side aggregated view of the ratings of a single entity
+public class RatingStats {
+
+    private Long entityId;
+
+    private String entityType;
+
+    private long count;
+
+    private long sum;
+
+    private Double average;
+
+    // Exponentially time-decayed average, only available from rating summaries
+    private Double decayedAverage;
+
+    private Integer min;
+
+    private Integer max;
+
+    // Number of ratings per score, keyed 1 through 5
+    private Map<Integer, Long> histogram = new LinkedHashMap<>();
+
+
+    public RatingStats() {
+    }
+
+
+    public RatingStats(Long entityId, String entityType, long count, long sum, Double average,
+                       Integer min, Integer max, Map<Integer, Long> histogram) {
+        this.entityId = entityId;
+        this.entityType = entityType;
+        this.count = count;
+        this.sum = sum;
+        this.average = average;
+        this.min = min;
+        this.max = max;
+        this.histogram = histogram;
+    }
+
+
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(String entityType) {
+        this.entityType = entityType;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public void setSum(long sum) {
+        this.sum = sum;
+    }
+
+    public Double getAverage() {
+        return average;
+    }
+
+    public void setAverage(Double average) {
+        this.average = average;
+    }
+
+    public Double getDecayedAverage() {
+        return decayedAverage;
+    }
+
+    public void setDecayedAverage(Double decayedAverage) {
+        this.decayedAverage = decayedAverage;
+    }
+
+    public Integer getMin() {
+        return min;
+    }
+
+    public void setMin(Integer min) {
+        this.min = min;
+    }
+
+    public Integer getMax() {
+        return max;
+    }
+
+    public void setMax(Integer max) {
+        this.max = max;
+    }
+
+    public Map<Integer, Long> getHistogram() {
+        return histogram;
+    }
+
+    public void setHistogram(Map<Integer, Long> histogram) {
+        this.histogram = histogram;
+    }
+
+    @Override
+    public String toString() {
+        return "RatingStats{" +
+                "entityId=" + entityId +
+                ", entityType='" + entityType + '\'' +
+                ", count=" + count +
+                ", sum=" + sum +
+                ", average=" + average +
+                ", decayedAverage=" + decayedAverage +
+                ", min=" + min +
+                ", max=" + max +
+                ", histogram=" + histogram +
+                '}';
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.miniapp.models;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+
+// Running rating totals of one entity, maintained with atomic $inc updates
+@Document(collection = "rating_summaries")
+@CompoundIndex(name = "entity_type_entity_id", def = "{'entityType': 1, 'entityId': 1}", unique = true)
+public class RatingSummary {
+
+    // entityType + ":" + entityId, so an entity's summary is a single _id lookup
+    @Id
+    private String id;
+
+    private String entityType;
+
+    private Long entityId;
+
+    private long ratingCount;
+
+    private long ratingSum;
+
+    // Number of ratings per score, keyed "1" through "5"
+    private Map<String, Long> histogram = new LinkedHashMap<>();
+
+    // Sums of score * weight and of weight, where each rating's weight grows
+    // exponentially with its ratingDate measured from decayEpoch. Their ratio is the
+    // time-decayed average.
+    private double decayedScoreSum;
+
+    private double decayWeight;
+
+    // Epoch second the weights are measured from; moved forward (and the sums rescaled)
+    // by RatingSummaryService so the weights stay bounded
+    private long decayEpoch;
+
+
+    public RatingSummary() {
+        // Required by MongoDB
+    }
+
+
+    public RatingSummary(String entityType, Long entityId, long ratingCount, long ratingSum,
+                         Map<String, Long> histogram) {
+        this.id = idFor(entityType, entityId);
+        this.entityType = normalizeEntityType(entityType);
+        this.entityId = entityId;
+        this.ratingCount = ratingCount;
+        this.ratingSum = ratingSum;
+        this.histogram = histogram;
+    }
+
+
+    public static String normalizeEntityType(String entityType) {
+        return entityType == null ? null : entityType.trim().toLowerCase(Locale.ROOT);
+    }
+
+
+    public static String idFor(String entityType, Long entityId) {
+        return normalizeEntityType(entityType) + ":" + entityId;
+    }
+
+
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(String entityType) {
+        this.entityType = entityType;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public long getRatingCount() {
+        return ratingCount;
+    }
+
+    public void setRatingCount(long ratingCount) {
+        this.ratingCount = ratingCount;
+    }
+
+    public long getRatingSum() {
+        return ratingSum;
+    }
+
+    public void setRatingSum(long ratingSum) {
+        this.ratingSum = ratingSum;
+    }
+
+    public Map<String, Long> getHistogram() {
+        return histogram;
+    }
+
+    public void setHistogram(Map<String, Long> histogram) {
+        this.histogram = histogram;
+    }
+
+    public double getDecayedScoreSum() {
+        return decayedScoreSum;
+    }
+
+    public void setDecayedScoreSum(double decayedScoreSum) {
+        this.decayedScoreSum = decayedScoreSum;
+    }
+
+    public double getDecayWeight() {
+        return decayWeight;
+    }
+
+    public void setDecayWeight(double decayWeight) {
+        this.decayWeight = decayWeight;
+    }
+
+    public long getDecayEpoch() {
+        return decayEpoch;
+    }
+
+    public void setDecayEpoch(long decayEpoch) {
+        this.decayEpoch = decayEpoch;
+    }
+
+    // Falls back to the plain average once every weight has decayed to zero
+    public double getDecayedAverage() {
+        return ratingCount > 0 && decayWeight > 0 ? decayedScoreSum / decayWeight : getAverage();
+    }
+
+    public double getAverage() {
+        return ratingCount > 0 ? (double) ratingSum / ratingCount : 0.0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RatingSummary that = (RatingSummary) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+
+    @Override
+    public String toString() {
+        return "RatingSummary{" +
+                "id='" + id + '\'' +
+                ", ratingCount=" + ratingCount +
+                ", ratingSum=" + ratingSum +
+                ", histogram=" + histogram +
+                '}';
+    }
+}
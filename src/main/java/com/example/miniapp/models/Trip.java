@@ -6,12 +6,19 @@ import java.util.Objects;
 
 
 @Entity
-@Table(name = "trips")
+@Table(name = "trips", indexes = {
+        @Index(name = "idx_trips_trip_date", columnList = "trip_date"),
+        @Index(name = "idx_trips_captain_id_trip_date", columnList = "captain_id, trip_date"),
+        @Index(name = "idx_trips_customer_id_trip_date", columnList = "customer_id, trip_date")
+})
 public class Trip {
 
 
+    // Sequence ids are fetched 50 at a time, so inserts can be batched; with IDENTITY
+    // Hibernate has to run every INSERT on its own to read the generated key
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trips_seq")
+    @SequenceGenerator(name = "trips_seq", sequenceName = "trips_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "trip_date", nullable = false)
@@ -0,0 +1,73 @@
+package com.example.miniapp.models;
+
+import java.time.LocalDate;
+
+
+// One monthly partition of the trips table, covering [rangeStart, rangeEnd)
+public class TripPartition {
+
+    private String name;
+
+    private LocalDate rangeStart;
+
+    private LocalDate rangeEnd;
+
+    // Planner estimate from pg_class, -1 if the partition was never analyzed
+    private long estimatedRows;
+
+
+    public TripPartition() {
+    }
+
+
+    public TripPartition(String name, LocalDate rangeStart, LocalDate rangeEnd, long estimatedRows) {
+        this.name = name;
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.estimatedRows = estimatedRows;
+    }
+
+
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public LocalDate getRangeStart() {
+        return rangeStart;
+    }
+
+    public void setRangeStart(LocalDate rangeStart) {
+        this.rangeStart = rangeStart;
+    }
+
+    public LocalDate getRangeEnd() {
+        return rangeEnd;
+    }
+
+    public void setRangeEnd(LocalDate rangeEnd) {
+        this.rangeEnd = rangeEnd;
+    }
+
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public void setEstimatedRows(long estimatedRows) {
+        this.estimatedRows = estimatedRows;
+    }
+
+    @Override
+    public String toString() {
+        return "TripPartition{" +
+                "name='" + name + '\'' +
+                ", rangeStart=" + rangeStart +
+                ", rangeEnd=" + rangeEnd +
+                ", estimatedRows=" + estimatedRows +
+                '}';
+    }
+}
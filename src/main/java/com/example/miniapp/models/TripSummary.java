@@ -0,0 +1,168 @@
+package com.example.miniapp.models;
+
+import java.time.LocalDateTime;
+
+
+// Read model for trip listings, filled by a single JPQL constructor expression that
+// joins the captain, customer and payment instead of loading them per trip.
+public class TripSummary {
+
+    private Long id;
+    private LocalDateTime tripDate;
+    private String origin;
+    private String destination;
+    private Double tripCost;
+
+    private Long captainId;
+    private String captainName;
+
+    private Long customerId;
+    private String customerName;
+
+    private Long paymentId;
+    private Double paymentAmount;
+    private String paymentMethod;
+    private Boolean paymentStatus;
+
+
+    public TripSummary() {
+    }
+
+
+    public TripSummary(Long id, LocalDateTime tripDate, String origin, String destination, Double tripCost,
+                       Long captainId, String captainName, Long customerId, String customerName,
+                       Long paymentId, Double paymentAmount, String paymentMethod, Boolean paymentStatus) {
+        this.id = id;
+        this.tripDate = tripDate;
+        this.origin = origin;
+        this.destination = destination;
+        this.tripCost = tripCost;
+        this.captainId = captainId;
+        this.captainName = captainName;
+        this.customerId = customerId;
+        this.customerName = customerName;
+        this.paymentId = paymentId;
+        this.paymentAmount = paymentAmount;
+        this.paymentMethod = paymentMethod;
+        this.paymentStatus = paymentStatus;
+    }
+
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getTripDate() {
+        return tripDate;
+    }
+
+    public void setTripDate(LocalDateTime tripDate) {
+        this.tripDate = tripDate;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public Double getTripCost() {
+        return tripCost;
+    }
+
+    public void setTripCost(Double tripCost) {
+        this.tripCost = tripCost;
+    }
+
+    public Long getCaptainId() {
+        return captainId;
+    }
+
+    public void setCaptainId(Long captainId) {
+        this.captainId = captainId;
+    }
+
+    public String getCaptainName() {
+        return captainName;
+    }
+
+    public void setCaptainName(String captainName) {
+        this.captainName = captainName;
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Long customerId) {
+        this.customerId = customerId;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public void setCustomerName(String customerName) {
+        this.customerName = customerName;
+    }
+
+    public Long getPaymentId() {
+        return paymentId;
+    }
+
+    public void setPaymentId(Long paymentId) {
+        this.paymentId = paymentId;
+    }
+
+    public Double getPaymentAmount() {
+        return paymentAmount;
+    }
+
+    public void setPaymentAmount(Double paymentAmount) {
+        this.paymentAmount = paymentAmount;
+    }
+
+    public String getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    public void setPaymentMethod(String paymentMethod) {
+        this.paymentMethod = paymentMethod;
+    }
+
+    public Boolean getPaymentStatus() {
+        return paymentStatus;
+    }
+
+    public void setPaymentStatus(Boolean paymentStatus) {
+        this.paymentStatus = paymentStatus;
+    }
+
+    @Override
+    public String toString() {
+        return "TripSummary{" +
+                "id=" + id +
+                ", tripDate=" + tripDate +
+                ", origin='" + origin + '\'' +
+                ", destination='" + destination + '\'' +
+                ", tripCost=" + tripCost +
+                ", captainId=" + captainId +
+                ", customerId=" + customerId +
+                ", paymentId=" + paymentId +
+                '}';
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.miniapp.models;
+
+import java.time.LocalDateTime;
+
+
+// Number of trips and their summed cost in one histogram bucket starting at start
+public class TripVolumeBucket {
+
+    private LocalDateTime start;
+
+    private long tripCount;
+
+    private double totalCost;
+
+
+    public TripVolumeBucket() {
+    }
+
+
+    public TripVolumeBucket(LocalDateTime start, long tripCount, double totalCost) {
+        this.start = start;
+        this.tripCount = tripCount;
+        this.totalCost = totalCost;
+    }
+
+
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public void setStart(LocalDateTime start) {
+        this.start = start;
+    }
+
+    public long getTripCount() {
+        return tripCount;
+    }
+
+    public void setTripCount(long tripCount) {
+        this.tripCount = tripCount;
+    }
+
+    public double getTotalCost() {
+        return totalCost;
+    }
+
+    public void setTotalCost(double totalCost) {
+        this.totalCost = totalCost;
+    }
+
+    @Override
+    public String toString() {
+        return "TripVolumeBucket{" +
+                "start=" + start +
+                ", tripCount=" + tripCount +
+                ", totalCost=" + totalCost +
+                '}';
+    }
+}
@@ -1,15 +1,28 @@
 package com.example.miniapp.repositories;
 
 import com.example.miniapp.models.Captain;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CaptainRepository extends JpaRepository<Captain, Long> {
 
     List<Captain> findByAvgRatingScoreGreaterThan(Double ratingThreshold);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Captain> findByLicenseNumber(String licenseNumber);
-}
\ No newline at end of file
+    boolean existsByLicenseNumber(String licenseNumber);
+    List<Captain> findByAvgRatingScoreNotNullOrderByAvgRatingScoreDescIdAsc(Pageable pageable);
+    List<Captain> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT c FROM Captain c ORDER BY c.id")
+    Stream<Captain> streamAllOrderedById();
+}
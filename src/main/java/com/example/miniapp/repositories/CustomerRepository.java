@@ -1,16 +1,46 @@
 package com.example.miniapp.repositories;
 
 import com.example.miniapp.models.Customer;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Customer> findByEmail(String email);
 
+    boolean existsByEmail(String email);
+
     List<Customer> findByPhoneNumber(String phoneNumber);
+
+    // Phone numbers in [prefix, upperBound) under byte-wise "C" ordering are exactly those
+    // starting with prefix; served by idx_customers_phone_number_prefix on the same expression
+    @Query(value = "SELECT * FROM customers WHERE phone_number COLLATE \"C\" >= :prefix " +
+            "AND phone_number COLLATE \"C\" < :upperBound ORDER BY phone_number COLLATE \"C\", id LIMIT :limit",
+            nativeQuery = true)
+    List<Customer> findByPhoneNumberPrefix(@Param("prefix") String prefix, @Param("upperBound") String upperBound,
+                                           @Param("limit") int limit);
+
+    // Served by idx_customers_email_domain, an index on the same expression; domain must be lower case
+    @Query(value = "SELECT * FROM customers WHERE lower(split_part(email, '@', 2)) = :domain " +
+            "AND id > :afterId ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Customer> findByEmailDomain(@Param("domain") String domain, @Param("afterId") Long afterId,
+                                     @Param("limit") int limit);
+
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT c FROM Customer c ORDER BY c.id")
+    Stream<Customer> streamAllOrderedById();
 }
@@ -1,10 +1,16 @@
 package com.example.miniapp.repositories;
 
 import com.example.miniapp.models.Payment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
 @Repository
@@ -18,4 +24,11 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
 
     Optional<Payment> findOneByTripId(Long tripId);
-}
\ No newline at end of file
+
+
+    List<Payment> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT p FROM Payment p ORDER BY p.id")
+    Stream<Payment> streamAllOrderedById();
+}
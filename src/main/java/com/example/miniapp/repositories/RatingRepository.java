@@ -1,6 +1,7 @@
 package com.example.miniapp.repositories;
 
 import com.example.miniapp.models.Rating;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
@@ -8,7 +9,7 @@ import java.util.List;
 
 
 @Repository
-public interface RatingRepository extends MongoRepository<Rating, String> {
+public interface RatingRepository extends MongoRepository<Rating, String>, RatingRepositoryCustom {
 
 
     List<Rating> findByEntityIdAndEntityType(Long entityId, String entityType);
@@ -21,4 +22,10 @@ public interface RatingRepository extends MongoRepository<Rating, String> {
 
 
     List<Rating> findByScoreBetween(Integer minScore, Integer maxScore);
-}
\ No newline at end of file
+
+
+    List<Rating> findAllByOrderByIdAsc(Pageable pageable);
+
+
+    List<Rating> findByIdGreaterThanOrderByIdAsc(String afterId, Pageable pageable);
+}
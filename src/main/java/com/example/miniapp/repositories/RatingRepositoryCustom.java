@@ -0,0 +1,19 @@
+package com.example.miniapp.repositories;
+
+import com.example.miniapp.models.RatingStats;
+
+import java.util.List;
+
+
+public interface RatingRepositoryCustom {
+
+
+    RatingStats getRatingStats(Long entityId, String entityType);
+
+
+    List<RatingStats> getRatingStatsByEntityType(String entityType);
+
+
+    // Stats for every rated entity, with entity types lower-cased
+    List<RatingStats> getAllRatingStats();
+}
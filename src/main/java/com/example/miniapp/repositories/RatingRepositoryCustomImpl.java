@@ -0,0 +1,101 @@
+package com.example.miniapp.repositories;
+
+import com.example.miniapp.models.Rating;
+import com.example.miniapp.models.RatingStats;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.GroupOperation;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+// Runs the rating statistics as a $match/$group pipeline so only the aggregated
+// numbers, not the rating documents, travel back from MongoDB.
+public class RatingRepositoryCustomImpl implements RatingRepositoryCustom {
+
+    private static final int MIN_SCORE = 1;
+    private static final int MAX_SCORE = 5;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public RatingRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+
+    @Override
+    public RatingStats getRatingStats(Long entityId, String entityType) {
+        List<RatingStats> stats = aggregateStats(Aggregation.match(
+                Criteria.where("entityId").is(entityId).and("entityType").is(entityType)));
+        return stats.isEmpty() ? null : stats.get(0);
+    }
+
+
+    @Override
+    public List<RatingStats> getRatingStatsByEntityType(String entityType) {
+        return aggregateStats(Aggregation.match(Criteria.where("entityType").is(entityType)));
+    }
+
+
+    @Override
+    public List<RatingStats> getAllRatingStats() {
+        return aggregateStats(Aggregation.project("entityId", "score")
+                .and(StringOperators.valueOf("entityType").toLower()).as("entityType"));
+    }
+
+    private List<RatingStats> aggregateStats(AggregationOperation selection) {
+        GroupOperation group = Aggregation.group("entityId", "entityType")
+                .count().as("count")
+                .sum("score").as("sum")
+                .avg("score").as("average")
+                .min("score").as("min")
+                .max("score").as("max");
+        for (int score = MIN_SCORE; score <= MAX_SCORE; score++) {
+            group = group.sum(ConditionalOperators
+                    .when(ComparisonOperators.valueOf("score").equalToValue(score))
+                    .then(1)
+                    .otherwise(0)).as("score" + score);
+        }
+
+        Aggregation aggregation = Aggregation.newAggregation(selection, group);
+
+        return mongoTemplate.aggregate(aggregation, Rating.class, Document.class)
+                .getMappedResults()
+                .stream()
+                .map(this::toRatingStats)
+                .toList();
+    }
+
+    private RatingStats toRatingStats(Document document) {
+        Document id = document.get("_id", Document.class);
+
+        Map<Integer, Long> histogram = new LinkedHashMap<>();
+        for (int score = MIN_SCORE; score <= MAX_SCORE; score++) {
+            histogram.put(score, toLong(document.get("score" + score)));
+        }
+
+        return new RatingStats(
+                id.get("entityId") == null ? null : ((Number) id.get("entityId")).longValue(),
+                id.getString("entityType"),
+                toLong(document.get("count")),
+                toLong(document.get("sum")),
+                document.get("average") == null ? null : ((Number) document.get("average")).doubleValue(),
+                document.get("min") == null ? null : ((Number) document.get("min")).intValue(),
+                document.get("max") == null ? null : ((Number) document.get("max")).intValue(),
+                histogram);
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? 0L : ((Number) value).longValue();
+    }
+}
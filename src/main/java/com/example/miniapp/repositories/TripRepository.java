@@ -1,11 +1,19 @@
 package com.example.miniapp.repositories;
 
 import com.example.miniapp.models.Trip;
+import com.example.miniapp.models.TripSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 
 @Repository
@@ -21,5 +29,33 @@ public interface TripRepository extends JpaRepository<Trip, Long> {
     List<Trip> findByCustomerId(Long customerId);
 
 
+    // Listing projections: one statement each, no matter how many trips match
+    String SUMMARY_SELECT = "SELECT new com.example.miniapp.models.TripSummary(" +
+            "t.id, t.tripDate, t.origin, t.destination, t.tripCost, " +
+            "c.id, c.name, cu.id, cu.name, p.id, p.amount, p.paymentMethod, p.paymentStatus) " +
+            "FROM Trip t LEFT JOIN t.captain c LEFT JOIN t.customer cu LEFT JOIN t.payment p ";
 
-}
\ No newline at end of file
+    @Query(SUMMARY_SELECT + "ORDER BY t.id")
+    List<TripSummary> findAllSummaries();
+
+    // Filters on trip_date itself so that a month-partitioned trips table only scans the
+    // partitions overlapping the range
+    @Query(SUMMARY_SELECT + "WHERE t.tripDate BETWEEN :startDate AND :endDate ORDER BY t.id")
+    List<TripSummary> findSummariesByTripDateBetween(@Param("startDate") LocalDateTime startDate,
+                                                     @Param("endDate") LocalDateTime endDate);
+
+    @Query(SUMMARY_SELECT + "WHERE c.id = :captainId ORDER BY t.id")
+    List<TripSummary> findSummariesByCaptainId(@Param("captainId") Long captainId);
+
+
+    // Oldest first, for moving trips to the archive
+    @Query(SUMMARY_SELECT + "WHERE t.tripDate < :cutoff ORDER BY t.tripDate, t.id")
+    List<TripSummary> findSummariesByTripDateBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+
+    List<Trip> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT t FROM Trip t ORDER BY t.id")
+    Stream<Trip> streamAllOrderedById();
+}
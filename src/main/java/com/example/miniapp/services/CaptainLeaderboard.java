@@ -0,0 +1,154 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.Captain;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+
+// In-memory index of captains ordered by avgRatingScore, kept in sync by the code
+// paths that change the score, so "best captains" queries never reach Postgres.
+// Captains without a score are not ranked.
+@Service
+public class CaptainLeaderboard {
+
+    private static final Logger log = LoggerFactory.getLogger(CaptainLeaderboard.class);
+
+    private record Entry(double score, long captainId) {
+    }
+
+    // Highest score first, ties broken by id so every captain has a distinct position
+    private static final Comparator<Entry> RANKING_ORDER = Comparator.comparingDouble(Entry::score).reversed()
+            .thenComparingLong(Entry::captainId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(RANKING_ORDER);
+    // captainId -> immutable snapshot returned to callers
+    private final Map<Long, Captain> captains = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    @Autowired
+    public CaptainLeaderboard(JdbcTemplate jdbcTemplate,
+                              @Value("${captain.leaderboard.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+
+        jdbcTemplate.query("SELECT id, name, license_number, avg_rating_score FROM captains", rs -> {
+            Double score = rs.getDouble("avg_rating_score");
+            if (rs.wasNull()) {
+                score = null;
+            }
+            // Keep anything written by a live update while the table was being read
+            Captain captain = new Captain(rs.getLong("id"), rs.getString("name"), rs.getString("license_number"), score);
+            captains.computeIfAbsent(captain.getId(), id -> {
+                rank(null, captain);
+                return captain;
+            });
+        });
+
+        ready = true;
+        log.debug("Captain leaderboard loaded with {} captains", captains.size());
+    }
+
+
+    public void put(Captain captain) {
+        if (!enabled || captain == null || captain.getId() == null) {
+            return;
+        }
+        Captain snapshot = new Captain(captain.getId(), captain.getName(), captain.getLicenseNumber(),
+                captain.getAvgRatingScore());
+        captains.compute(snapshot.getId(), (id, previous) -> {
+            rank(previous, snapshot);
+            return snapshot;
+        });
+    }
+
+
+    public void updateScore(Long captainId, Double avgRatingScore) {
+        if (!enabled || captainId == null) {
+            return;
+        }
+        captains.computeIfPresent(captainId, (id, previous) -> {
+            Captain snapshot = new Captain(id, previous.getName(), previous.getLicenseNumber(), avgRatingScore);
+            rank(previous, snapshot);
+            return snapshot;
+        });
+    }
+
+
+    public void remove(Long captainId) {
+        if (!enabled || captainId == null) {
+            return;
+        }
+        captains.computeIfPresent(captainId, (id, previous) -> {
+            rank(previous, null);
+            return null;
+        });
+    }
+
+
+    // Captains scoring strictly above the threshold, in id order like the repository query
+    public List<Captain> findAbove(double threshold) {
+        List<Captain> result = new ArrayList<>();
+        for (Entry entry : ranking.headSet(new Entry(threshold, Long.MIN_VALUE), false)) {
+            Captain captain = captains.get(entry.captainId());
+            if (captain != null) {
+                result.add(captain);
+            }
+        }
+        result.sort(Comparator.comparing(Captain::getId));
+        return result;
+    }
+
+
+    public List<Captain> top(int k) {
+        List<Captain> result = new ArrayList<>(Math.min(k, captains.size()));
+        for (Entry entry : ranking) {
+            if (result.size() >= k) {
+                break;
+            }
+            Captain captain = captains.get(entry.captainId());
+            if (captain != null) {
+                result.add(captain);
+            }
+        }
+        return result;
+    }
+
+    private void rank(Captain previous, Captain current) {
+        if (previous != null && previous.getAvgRatingScore() != null) {
+            ranking.remove(new Entry(previous.getAvgRatingScore(), previous.getId()));
+        }
+        if (current != null && current.getAvgRatingScore() != null) {
+            ranking.add(new Entry(current.getAvgRatingScore(), current.getId()));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.CacheStatistics;
+import com.example.miniapp.models.Captain;
+import com.example.miniapp.repositories.CaptainRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+
+// Read-through cache for captain lookups by id and license number. Captains are
+// cached by id; the license cache only maps a license to its captain id, so a
+// rating update only has to invalidate the id entry. Unknown ids/licenses are
+// cached as empty for a shorter time so repeated misses don't reach Postgres.
+@Service
+public class CaptainLookupCache {
+
+    private final CaptainRepository captainRepository;
+    private final boolean enabled;
+
+    private final Cache<Long, Optional<Captain>> captainsById;
+    private final Cache<String, Optional<Long>> captainIdsByLicense;
+
+    @Autowired
+    public CaptainLookupCache(CaptainRepository captainRepository,
+                              @Value("${captain.cache.enabled:true}") boolean enabled,
+                              @Value("${captain.cache.max-size:10000}") long maxSize,
+                              @Value("${captain.cache.ttl-seconds:300}") long ttlSeconds,
+                              @Value("${captain.cache.negative-ttl-seconds:10}") long negativeTtlSeconds) {
+        this.captainRepository = captainRepository;
+        this.enabled = enabled;
+        this.captainsById = newCache(maxSize, Duration.ofSeconds(ttlSeconds), Duration.ofSeconds(negativeTtlSeconds));
+        this.captainIdsByLicense = newCache(maxSize, Duration.ofSeconds(ttlSeconds), Duration.ofSeconds(negativeTtlSeconds));
+    }
+
+
+    public Captain getById(Long id) {
+        if (!enabled || id == null) {
+            return captainRepository.findById(id).orElse(null);
+        }
+        return captainsById.get(id, key -> captainRepository.findById(key).map(CaptainLookupCache::snapshot))
+                .orElse(null);
+    }
+
+
+    public Captain getByLicenseNumber(String licenseNumber) {
+        if (!enabled || licenseNumber == null) {
+            return captainRepository.findByLicenseNumber(licenseNumber).orElse(null);
+        }
+        Optional<Long> captainId = captainIdsByLicense.get(licenseNumber, key ->
+                captainRepository.findByLicenseNumber(key).map(captain -> {
+                    captainsById.put(captain.getId(), Optional.of(snapshot(captain)));
+                    return captain.getId();
+                }));
+        return captainId.map(this::getById).orElse(null);
+    }
+
+
+    // Drops whatever is cached for the captain, including a cached "not found"
+    public void invalidate(Captain captain) {
+        if (captain == null) {
+            return;
+        }
+        invalidate(captain.getId());
+        if (captain.getLicenseNumber() != null) {
+            captainIdsByLicense.invalidate(captain.getLicenseNumber());
+        }
+    }
+
+
+    public void invalidate(Long captainId) {
+        if (captainId != null) {
+            captainsById.invalidate(captainId);
+        }
+    }
+
+
+    public List<CacheStatistics> getStatistics() {
+        return List.of(
+                toStatistics("captainsById", captainsById),
+                toStatistics("captainIdsByLicense", captainIdsByLicense));
+    }
+
+    // Cached captains are shared between requests, so hand out detached copies
+    // without the lazy trips collection
+    private static Captain snapshot(Captain captain) {
+        return new Captain(captain.getId(), captain.getName(), captain.getLicenseNumber(), captain.getAvgRatingScore());
+    }
+
+    private static CacheStatistics toStatistics(String name, Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return new CacheStatistics(name, cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.evictionCount(), stats.hitRate());
+    }
+
+    private static <K, V> Cache<K, Optional<V>> newCache(long maxSize, Duration ttl, Duration negativeTtl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<K, Optional<V>>() {
+                    @Override
+                    public long expireAfterCreate(K key, Optional<V> value, long currentTime) {
+                        return (value.isPresent() ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(K key, Optional<V> value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(K key, Optional<V> value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.PropagationStatus;
+import com.example.miniapp.models.RatingSummary;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+// Propagates captain rating averages from the Mongo rating summaries to Postgres off the
+// request thread. Captains are queued at most once no matter how many ratings they
+// receive between flushes, and each flush writes all of them in one UPDATE.
+@Service
+public class CaptainRatingPropagator {
+
+    private static final Logger log = LoggerFactory.getLogger(CaptainRatingPropagator.class);
+
+    private static final int MAX_CAPTAINS_PER_STATEMENT = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final CaptainLeaderboard captainLeaderboard;
+    private final CaptainLookupCache captainLookupCache;
+    private final SecondLevelCache secondLevelCache;
+
+    // captainId -> time (epoch millis) it was first queued since the last flush
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong totalFlushed = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private volatile LocalDateTime lastFlushAt;
+    private volatile int lastFlushSize;
+
+    @Autowired
+    public CaptainRatingPropagator(MongoTemplate mongoTemplate, JdbcTemplate jdbcTemplate,
+                                   CaptainLeaderboard captainLeaderboard, CaptainLookupCache captainLookupCache,
+                                   SecondLevelCache secondLevelCache) {
+        this.mongoTemplate = mongoTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.captainLeaderboard = captainLeaderboard;
+        this.captainLookupCache = captainLookupCache;
+        this.secondLevelCache = secondLevelCache;
+    }
+
+
+    public void enqueue(Long captainId) {
+        if (captainId != null) {
+            pending.putIfAbsent(captainId, System.currentTimeMillis());
+        }
+    }
+
+
+    @Scheduled(fixedDelayString = "${rating.propagation.flush-interval-ms:500}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Dequeue before reading the summaries so that ratings landing during the
+        // flush re-queue their captain and are picked up by the next one
+        Map<Long, Long> batch = new HashMap<>();
+        for (Long captainId : new ArrayList<>(pending.keySet())) {
+            Long queuedAt = pending.remove(captainId);
+            if (queuedAt != null) {
+                batch.put(captainId, queuedAt);
+            }
+        }
+
+        try {
+            List<String> summaryIds = batch.keySet().stream()
+                    .map(captainId -> RatingSummary.idFor("captain", captainId))
+                    .toList();
+            List<RatingSummary> summaries = mongoTemplate.find(
+                    Query.query(Criteria.where("_id").in(summaryIds)), RatingSummary.class);
+
+            List<RatingSummary> rated = summaries.stream()
+                    .filter(summary -> summary.getRatingCount() > 0)
+                    .toList();
+            for (int from = 0; from < rated.size(); from += MAX_CAPTAINS_PER_STATEMENT) {
+                updateAverages(rated.subList(from, Math.min(from + MAX_CAPTAINS_PER_STATEMENT, rated.size())));
+            }
+
+            totalFlushed.addAndGet(batch.size());
+            lastFlushSize = batch.size();
+            lastFlushAt = LocalDateTime.now();
+            log.debug("Propagated rating averages for {} captains", batch.size());
+        } catch (RuntimeException e) {
+            // Put the captains back, keeping their original queue time so the lag stays visible
+            batch.forEach(pending::putIfAbsent);
+            failedFlushes.incrementAndGet();
+            log.warn("Failed to propagate rating averages for {} captains, will retry", batch.size(), e);
+        }
+    }
+
+
+    public PropagationStatus getStatus() {
+        long now = System.currentTimeMillis();
+        long oldest = pending.values().stream().mapToLong(Long::longValue).min().orElse(now);
+        return new PropagationStatus(pending.size(), now - oldest, lastFlushAt, lastFlushSize,
+                totalFlushed.get(), failedFlushes.get());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void updateAverages(Collection<RatingSummary> summaries) {
+        if (summaries.isEmpty()) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("UPDATE captains SET avg_rating_score = CASE id");
+        List<Object> args = new ArrayList<>();
+        for (RatingSummary summary : summaries) {
+            sql.append(" WHEN ? THEN ?");
+            args.add(summary.getEntityId());
+            args.add(summary.getAverage());
+        }
+        sql.append(" ELSE avg_rating_score END WHERE id IN (");
+        String separator = "";
+        for (RatingSummary summary : summaries) {
+            sql.append(separator).append('?');
+            args.add(summary.getEntityId());
+            separator = ", ";
+        }
+        sql.append(')');
+
+        jdbcTemplate.update(sql.toString(), args.toArray());
+
+        for (RatingSummary summary : summaries) {
+            captainLeaderboard.updateScore(summary.getEntityId(), summary.getAverage());
+            captainLookupCache.invalidate(summary.getEntityId());
+        }
+        secondLevelCache.evictCaptains(summaries.stream().map(RatingSummary::getEntityId).toList());
+    }
+}
@@ -1,40 +1,181 @@
 package com.example.miniapp.services;
 
+import com.example.miniapp.config.SecondLevelCacheConfig;
+import com.example.miniapp.models.CacheStatistics;
 import com.example.miniapp.models.Captain;
+import com.example.miniapp.models.CaptainReputation;
+import com.example.miniapp.models.CaptainStatistics;
+import com.example.miniapp.models.CursorPage;
+import com.example.miniapp.models.KeyFilterStatistics;
+import com.example.miniapp.models.RatingStats;
 import com.example.miniapp.repositories.CaptainRepository;
+import com.example.miniapp.utils.AfterCommit;
+import com.example.miniapp.utils.EntityStreams;
+import jakarta.persistence.EntityManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 @Service
 public class CaptainService {
+    private static final int DELETE_CHUNK_SIZE = 1000;
+
     private final CaptainRepository captainRepository;
+    private final RatingSummaryService ratingSummaryService;
+    private final CaptainLeaderboard captainLeaderboard;
+    private final CaptainLookupCache captainLookupCache;
+    private final UniqueKeyFilters uniqueKeyFilters;
+    private final CaptainTripStatistics captainTripStatistics;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final TripService tripService;
+    private final SecondLevelCache secondLevelCache;
 
     @Autowired
-    public CaptainService(CaptainRepository captainRepository) {
+    public CaptainService(CaptainRepository captainRepository, RatingSummaryService ratingSummaryService,
+                          CaptainLeaderboard captainLeaderboard, CaptainLookupCache captainLookupCache,
+                          UniqueKeyFilters uniqueKeyFilters, CaptainTripStatistics captainTripStatistics,
+                          EntityManager entityManager, JdbcTemplate jdbcTemplate, TripService tripService,
+                          SecondLevelCache secondLevelCache) {
         this.captainRepository = captainRepository;
+        this.ratingSummaryService = ratingSummaryService;
+        this.captainLeaderboard = captainLeaderboard;
+        this.captainLookupCache = captainLookupCache;
+        this.uniqueKeyFilters = uniqueKeyFilters;
+        this.captainTripStatistics = captainTripStatistics;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tripService = tripService;
+        this.secondLevelCache = secondLevelCache;
     }
 
     public Captain addCaptain(Captain captain) {
-        return captainRepository.save(captain);
+        // Reject a duplicate license up front instead of failing on the unique constraint
+        if (captain != null && uniqueKeyFilters.isLicenseNumberTaken(captain.getLicenseNumber())) {
+            return null;
+        }
+
+        Captain savedCaptain = captainRepository.save(captain);
+        uniqueKeyFilters.recordLicenseNumber(savedCaptain.getLicenseNumber());
+        captainLeaderboard.put(savedCaptain);
+        captainLookupCache.invalidate(savedCaptain);
+        return savedCaptain;
     }
 
     public List<Captain> getAllCaptains() {
         return captainRepository.findAll();
     }
 
+    public CursorPage<Captain> getCaptainsPage(Long afterId, int size) {
+        int pageSize = CursorPage.pageSize(size);
+        List<Captain> captains = captainRepository.findByIdGreaterThanOrderByIdAsc(afterId == null ? 0L : afterId,
+                PageRequest.of(0, pageSize));
+        String nextCursor = captains.size() < pageSize ? null : String.valueOf(captains.get(captains.size() - 1).getId());
+        return new CursorPage<>(captains, nextCursor);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllCaptains(Consumer<? super Captain> consumer) {
+        EntityStreams.forEach(captainRepository.streamAllOrderedById(), entityManager, consumer);
+    }
+
     public Captain getCaptainById(Long id) {
-        return captainRepository.findById(id)
-                .orElse(null);
+        return captainLookupCache.getById(id);
     }
 
     public List<Captain> getCaptainsByRating(Double ratingThreshold) {
+        if (ratingThreshold != null && captainLeaderboard.isReady()) {
+            return captainLeaderboard.findAbove(ratingThreshold);
+        }
         return captainRepository.findByAvgRatingScoreGreaterThan(ratingThreshold);
     }
 
+    public List<Captain> getTopCaptains(int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        if (captainLeaderboard.isReady()) {
+            return captainLeaderboard.top(k);
+        }
+        return captainRepository.findByAvgRatingScoreNotNullOrderByAvgRatingScoreDescIdAsc(PageRequest.of(0, k));
+    }
+
     public Captain getCaptainByLicenseNumber(String licenseNumber) {
         // Return null or an empty Optional instead of throwing an exception
-        return captainRepository.findByLicenseNumber(licenseNumber).orElse(null);
+        return captainLookupCache.getByLicenseNumber(licenseNumber);
+    }
+
+    public CaptainReputation getCaptainReputation(Long id) {
+        Captain captain = captainLookupCache.getById(id);
+        if (captain == null) {
+            return null;
+        }
+
+        RatingStats summary = ratingSummaryService.getSummary("captain", id);
+        if (summary == null) {
+            return new CaptainReputation(id, captain.getAvgRatingScore(), null, 0);
+        }
+        return new CaptainReputation(id, captain.getAvgRatingScore(), summary.getDecayedAverage(), summary.getCount());
+    }
+
+    public CaptainStatistics getCaptainStatistics(Long id) {
+        if (captainLookupCache.getById(id) == null) {
+            return null;
+        }
+        return captainTripStatistics.getStatistics(id);
+    }
+
+    // Transactional itself: the call to deleteCaptains below does not go through the proxy
+    @Transactional
+    public String deleteCaptain(Long id) {
+        return deleteCaptains(Collections.singletonList(id)) > 0 ? "Captain deleted successfully" : null;
+    }
+
+    // Deletes the captains with their trips and payments in a few set-based statements per
+    // DELETE_CHUNK_SIZE ids, without loading any of them. Returns the number of captains deleted.
+    @Transactional
+    public int deleteCaptains(List<Long> ids) {
+        if (ids == null) {
+            return 0;
+        }
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+
+        int deleted = 0;
+        for (int from = 0; from < distinctIds.size(); from += DELETE_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + DELETE_CHUNK_SIZE, distinctIds.size()));
+            tripService.deleteTripsByCaptainIds(chunk);
+            List<Captain> removed = jdbcTemplate.query("DELETE FROM captains WHERE id IN (" +
+                            String.join(", ", Collections.nCopies(chunk.size(), "?")) + ") RETURNING id, license_number",
+                    (rs, rowNum) -> new Captain(rs.getLong("id"), null, rs.getString("license_number"), null),
+                    chunk.toArray());
+            AfterCommit.run(() -> removed.forEach(captain -> {
+                captainLeaderboard.remove(captain.getId());
+                captainLookupCache.invalidate(captain);
+            }));
+            captainTripStatistics.recordCaptainsRemoved(chunk);
+            secondLevelCache.evictCaptains(chunk);
+            deleted += removed.size();
+        }
+        secondLevelCache.evictQueryResults();
+        return deleted;
+    }
+
+    public List<CacheStatistics> getCacheStatistics() {
+        List<CacheStatistics> statistics = new ArrayList<>(captainLookupCache.getStatistics());
+        statistics.addAll(secondLevelCache.getStatistics(SecondLevelCacheConfig.CAPTAINS_REGION,
+                SecondLevelCacheConfig.QUERY_RESULTS_REGION));
+        return statistics;
+    }
+
+    public KeyFilterStatistics getLicenseFilterStatistics() {
+        return uniqueKeyFilters.getLicenseNumberStatistics();
     }
 }
\ No newline at end of file
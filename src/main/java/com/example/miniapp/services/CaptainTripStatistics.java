@@ -0,0 +1,329 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.CaptainStatistics;
+import com.example.miniapp.models.TripSummary;
+import com.example.miniapp.utils.AfterCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+
+// Per-captain trip count, cost total, last trip date and paid trip count, kept in
+// memory and adjusted once the trip and payment writes in TripService and PaymentService
+// commit.
+// Built from trips, payments and the trip archive at startup and rebuilt nightly. A
+// rebuild reads one snapshot of trips and payments; writes that commit after it are
+// applied to both the current and the rebuilt counters, so none are lost when the
+// rebuilt ones replace them and none are counted twice.
+@Service
+public class CaptainTripStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(CaptainTripStatistics.class);
+
+    private static final String STATS_SELECT = "SELECT t.captain_id, COUNT(*) AS trips, SUM(t.trip_cost) AS cost, " +
+            "MAX(t.trip_date) AS last_trip, COUNT(*) FILTER (WHERE p.payment_status) AS paid " +
+            "FROM trips t LEFT JOIN payments p ON p.trip_id = t.id ";
+
+    private static final class Counter {
+        private long trips;
+        private double cost;
+        private long paid;
+        private LocalDateTime lastTripDate;
+
+        synchronized void add(int direction, LocalDateTime tripDate, Double tripCost, boolean isPaid) {
+            trips += direction;
+            cost += direction * (tripCost == null ? 0 : tripCost);
+            paid += isPaid ? direction : 0;
+            if (direction > 0 && tripDate != null && (lastTripDate == null || tripDate.isAfter(lastTripDate))) {
+                lastTripDate = tripDate;
+            }
+        }
+
+        synchronized void load(long loadedTrips, double loadedCost, long loadedPaid, LocalDateTime loadedLastTripDate) {
+            trips += loadedTrips;
+            cost += loadedCost;
+            paid += loadedPaid;
+            if (loadedLastTripDate != null && (lastTripDate == null || loadedLastTripDate.isAfter(lastTripDate))) {
+                lastTripDate = loadedLastTripDate;
+            }
+        }
+
+        synchronized CaptainStatistics snapshot(Long captainId) {
+            return new CaptainStatistics(captainId, trips, cost, lastTripDate, paid);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final TripArchive tripArchive;
+    private final boolean enabled;
+
+    private volatile Map<Long, Counter> counters = new ConcurrentHashMap<>();
+    // Counters of the running rebuild, null when none is running
+    private Map<Long, Counter> rebuilding;
+    // Captains removed, and captains that lost a trip, after the rebuild's snapshot, which
+    // still has them and their trips
+    private final Set<Long> removedWhileRebuilding = ConcurrentHashMap.newKeySet();
+    private final Set<Long> shrunkWhileRebuilding = ConcurrentHashMap.newKeySet();
+    // Writers hold the read lock from before their commit until their counters are updated
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    @Autowired
+    public CaptainTripStatistics(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                 TripArchive tripArchive, @Value("${captain.stats.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setReadOnly(true);
+        this.tripArchive = tripArchive;
+        this.enabled = enabled;
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${captain.stats.rebuild-cron:0 20 4 * * *}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+
+        Map<Long, Counter> rebuilt = new ConcurrentHashMap<>();
+        removedWhileRebuilding.clear();
+        shrunkWhileRebuilding.clear();
+        try {
+            snapshotTransaction.executeWithoutResult(status -> {
+                // The snapshot starts with the first statement, taken while no write is
+                // between its commit and its counter update
+                swapLock.writeLock().lock();
+                try {
+                    jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+                    rebuilding = rebuilt;
+                } finally {
+                    swapLock.writeLock().unlock();
+                }
+                load(rebuilt);
+            });
+        } catch (RuntimeException e) {
+            swap(counters, null);
+            throw e;
+        }
+        finishRebuild(rebuilt);
+        ready = true;
+        log.debug("Captain trip statistics rebuilt for {} captains", rebuilt.size());
+    }
+
+
+    public void recordTripAdded(Long captainId, LocalDateTime tripDate, Double tripCost, boolean paid) {
+        if (enabled && captainId != null) {
+            AfterCommit.run(() -> forEachCounters(target -> target.computeIfAbsent(captainId, id -> new Counter())
+                    .add(1, tripDate, tripCost, paid)), swapLock.readLock());
+        }
+    }
+
+
+    public void recordTripRemoved(Long captainId, LocalDateTime tripDate, Double tripCost, boolean paid) {
+        if (enabled && captainId != null) {
+            AfterCommit.run(() -> applyTripRemoved(captainId, tripDate, tripCost, paid), swapLock.readLock());
+        }
+    }
+
+
+    // Same as recordTripRemoved for each trip, with one query for the captains whose
+    // latest trip was among those removed
+    public void recordTripsRemoved(List<TripSummary> trips) {
+        if (enabled) {
+            AfterCommit.run(() -> applyTripsRemoved(trips), swapLock.readLock());
+        }
+    }
+
+
+    public void recordCaptainsRemoved(Collection<Long> captainIds) {
+        if (enabled) {
+            AfterCommit.run(() -> {
+                forEachCounters(target -> captainIds.forEach(target::remove));
+                if (rebuilding != null) {
+                    removedWhileRebuilding.addAll(captainIds);
+                }
+            }, swapLock.readLock());
+        }
+    }
+
+
+    public void recordPaymentChanged(Long captainId, boolean wasPaid, boolean isPaid) {
+        if (enabled && captainId != null && wasPaid != isPaid) {
+            AfterCommit.run(() -> forEachCounters(target -> {
+                Counter counter = target.computeIfAbsent(captainId, id -> new Counter());
+                synchronized (counter) {
+                    counter.paid += isPaid ? 1 : -1;
+                }
+            }), swapLock.readLock());
+        }
+    }
+
+
+    public CaptainStatistics getStatistics(Long captainId) {
+        if (!enabled || !ready) {
+            return queryStatistics(captainId);
+        }
+        Counter counter = counters.get(captainId);
+        return counter == null ? new CaptainStatistics(captainId, 0, 0, null, 0) : counter.snapshot(captainId);
+    }
+
+    private void applyTripRemoved(Long captainId, LocalDateTime tripDate, Double tripCost, boolean paid) {
+        boolean[] wasLatest = new boolean[1];
+        forEachCounters(target -> {
+            Counter counter = target.computeIfAbsent(captainId, id -> new Counter());
+            counter.add(-1, tripDate, tripCost, paid);
+            wasLatest[0] |= tripDate != null && tripDate.equals(counter.lastTripDate);
+        });
+        if (rebuilding != null) {
+            shrunkWhileRebuilding.add(captainId);
+        }
+        // The removed trip may have been the latest one; the captain/date index makes this cheap
+        if (wasLatest[0]) {
+            Timestamp lastTrip = jdbcTemplate.queryForObject(
+                    "SELECT MAX(trip_date) FROM trips WHERE captain_id = ?", Timestamp.class, captainId);
+            setLastTripDate(captainId, lastTrip == null ? null : lastTrip.toLocalDateTime());
+        }
+    }
+
+    private void applyTripsRemoved(List<TripSummary> trips) {
+        Set<Long> staleLastTrip = new HashSet<>();
+        forEachCounters(target -> {
+            for (TripSummary trip : trips) {
+                if (trip.getCaptainId() == null) {
+                    continue;
+                }
+                Counter counter = target.computeIfAbsent(trip.getCaptainId(), id -> new Counter());
+                counter.add(-1, trip.getTripDate(), trip.getTripCost(), Boolean.TRUE.equals(trip.getPaymentStatus()));
+                if (trip.getTripDate() != null && trip.getTripDate().equals(counter.lastTripDate)) {
+                    staleLastTrip.add(trip.getCaptainId());
+                }
+            }
+        });
+        if (rebuilding != null) {
+            trips.stream().map(TripSummary::getCaptainId).filter(Objects::nonNull).forEach(shrunkWhileRebuilding::add);
+        }
+        if (staleLastTrip.isEmpty()) {
+            return;
+        }
+
+        Map<Long, LocalDateTime> lastTrips = queryLastTripDates(staleLastTrip);
+        staleLastTrip.forEach(captainId -> setLastTripDate(captainId, lastTrips.get(captainId)));
+    }
+
+    private Map<Long, LocalDateTime> queryLastTripDates(Set<Long> captainIds) {
+        Map<Long, LocalDateTime> lastTrips = new HashMap<>();
+        String placeholders = String.join(", ", Collections.nCopies(captainIds.size(), "?"));
+        jdbcTemplate.query("SELECT captain_id, MAX(trip_date) AS last_trip FROM trips WHERE captain_id IN (" +
+                placeholders + ") GROUP BY captain_id", rs -> {
+            lastTrips.put(rs.getLong("captain_id"), rs.getTimestamp("last_trip").toLocalDateTime());
+        }, captainIds.toArray());
+        return lastTrips;
+    }
+
+    private void load(Map<Long, Counter> rebuilt) {
+        jdbcTemplate.query(STATS_SELECT + "WHERE t.captain_id IS NOT NULL GROUP BY t.captain_id", rs -> {
+            rebuilt.computeIfAbsent(rs.getLong("captain_id"), id -> new Counter()).load(rs.getLong("trips"),
+                    rs.getDouble("cost"), rs.getLong("paid"), rs.getTimestamp("last_trip").toLocalDateTime());
+        });
+        tripArchive.forEachArchived(trip -> {
+            if (trip.getCaptainId() != null) {
+                rebuilt.computeIfAbsent(trip.getCaptainId(), id -> new Counter())
+                        .add(1, trip.getTripDate(), trip.getTripCost(), Boolean.TRUE.equals(trip.getPaymentStatus()));
+            }
+        });
+    }
+
+    // Drops what the snapshot still had of the captains removed or shrunk since, then makes
+    // the rebuilt counters current. No write is between its commit and its update meanwhile,
+    // so the last trip dates read here match the counters.
+    private void finishRebuild(Map<Long, Counter> rebuilt) {
+        swapLock.writeLock().lock();
+        try {
+            removedWhileRebuilding.forEach(rebuilt::remove);
+            shrunkWhileRebuilding.removeAll(removedWhileRebuilding);
+            if (!shrunkWhileRebuilding.isEmpty()) {
+                Map<Long, LocalDateTime> lastTrips = queryLastTripDates(shrunkWhileRebuilding);
+                shrunkWhileRebuilding.forEach(captainId -> {
+                    Counter counter = rebuilt.get(captainId);
+                    if (counter != null) {
+                        synchronized (counter) {
+                            counter.lastTripDate = lastTrips.get(captainId);
+                        }
+                    }
+                });
+            }
+            counters = rebuilt;
+            rebuilding = null;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private void swap(Map<Long, Counter> current, Map<Long, Counter> next) {
+        swapLock.writeLock().lock();
+        try {
+            counters = current;
+            rebuilding = next;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    // Applies a write to the current counters and, during a rebuild, to the rebuilt ones.
+    // Callers hold the read lock of swapLock.
+    private void forEachCounters(Consumer<Map<Long, Counter>> write) {
+        write.accept(counters);
+        if (rebuilding != null) {
+            write.accept(rebuilding);
+        }
+    }
+
+    private void setLastTripDate(Long captainId, LocalDateTime lastTripDate) {
+        forEachCounters(target -> {
+            Counter counter = target.get(captainId);
+            if (counter != null) {
+                synchronized (counter) {
+                    counter.lastTripDate = lastTripDate;
+                }
+            }
+        });
+    }
+
+    // Used until the counters are loaded, or when they are disabled
+    private CaptainStatistics queryStatistics(Long captainId) {
+        return jdbcTemplate.query(STATS_SELECT + "WHERE t.captain_id = ? GROUP BY t.captain_id",
+                        (rs, rowNum) -> new CaptainStatistics(captainId, rs.getLong("trips"), rs.getDouble("cost"),
+                                rs.getTimestamp("last_trip").toLocalDateTime(), rs.getLong("paid")),
+                        captainId)
+                .stream()
+                .findFirst()
+                .orElse(new CaptainStatistics(captainId, 0, 0, null, 0));
+    }
+}
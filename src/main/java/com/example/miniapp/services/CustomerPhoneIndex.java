@@ -0,0 +1,167 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.Customer;
+import com.example.miniapp.repositories.CustomerRepository;
+import com.example.miniapp.utils.AfterCommit;
+import com.example.miniapp.utils.PhoneTrie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+
+// In-memory PhoneTrie over customers.phone_number, kept in sync by CustomerService once
+// its writes commit, so prefix lookups find their ids without touching Postgres; only
+// the matching rows are then loaded by primary key, and rows whose number no longer
+// matches are dropped. Built at startup and rebuilt nightly, with writes applied to both
+// tries while a rebuild runs. Until the first build finishes, or when disabled, the
+// lookup runs as a range query on idx_customers_phone_number_prefix instead.
+@Service
+public class CustomerPhoneIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerPhoneIndex.class);
+
+    private static final int SCAN_FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomerRepository customerRepository;
+    private final boolean enabled;
+
+    private volatile PhoneTrie trie = new PhoneTrie();
+    // Trie of the running rebuild, null when none is running
+    private PhoneTrie rebuilding;
+    // Writers hold the read lock, so the swap never happens between their two updates
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    @Autowired
+    public CustomerPhoneIndex(JdbcTemplate jdbcTemplate, CustomerRepository customerRepository,
+                              @Value("${customer.phone-index.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.customerRepository = customerRepository;
+        this.enabled = enabled;
+    }
+
+
+    // Streams every phone number into a new trie and swaps it in. A number changed while
+    // the scan runs can still be added under its old value; lookups filter such entries
+    // out and the next rebuild drops them.
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${customer.phone-index.rebuild-cron:0 35 4 * * *}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+
+        PhoneTrie rebuilt = new PhoneTrie();
+        swap(trie, rebuilt);
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement("SELECT id, phone_number FROM customers");
+                statement.setFetchSize(SCAN_FETCH_SIZE);
+                return statement;
+            }, rs -> {
+                rebuilt.put(rs.getString("phone_number"), rs.getLong("id"));
+            });
+        } catch (RuntimeException e) {
+            swap(trie, null);
+            throw e;
+        }
+        swap(rebuilt, null);
+        ready = true;
+        log.debug("Customer phone index rebuilt with {} numbers", rebuilt.size());
+    }
+
+
+    public void put(Customer customer) {
+        if (enabled && customer != null && customer.getId() != null) {
+            Long id = customer.getId();
+            String phoneNumber = customer.getPhoneNumber();
+            AfterCommit.run(() -> forEachTrie(target -> target.put(phoneNumber, id)));
+        }
+    }
+
+
+    public void update(Long customerId, String previousPhoneNumber, String phoneNumber) {
+        if (enabled && customerId != null && !Objects.equals(previousPhoneNumber, phoneNumber)) {
+            AfterCommit.run(() -> forEachTrie(target -> {
+                target.remove(previousPhoneNumber, customerId);
+                target.put(phoneNumber, customerId);
+            }));
+        }
+    }
+
+
+    public void remove(Customer customer) {
+        if (enabled && customer != null && customer.getId() != null) {
+            Long id = customer.getId();
+            String phoneNumber = customer.getPhoneNumber();
+            AfterCommit.run(() -> forEachTrie(target -> target.remove(phoneNumber, id)));
+        }
+    }
+
+
+    // Up to limit customers whose phone number starts with prefix, in phone number order
+    public List<Customer> findByPrefix(String prefix, int limit) {
+        if (!enabled || !ready) {
+            return customerRepository.findByPhoneNumberPrefix(prefix, upperBound(prefix), limit);
+        }
+
+        List<Long> ids = trie.findByPrefix(prefix, limit);
+        Map<Long, Customer> customers = customerRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Customer::getId, Function.identity()));
+        List<Customer> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Customer customer = customers.get(id);
+            if (customer != null && customer.getPhoneNumber() != null && customer.getPhoneNumber().startsWith(prefix)) {
+                result.add(customer);
+            }
+        }
+        return result;
+    }
+
+    private void swap(PhoneTrie current, PhoneTrie next) {
+        swapLock.writeLock().lock();
+        try {
+            trie = current;
+            rebuilding = next;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    // Applies a write to the current trie and, during a rebuild, to the rebuilt one
+    private void forEachTrie(Consumer<PhoneTrie> write) {
+        swapLock.readLock().lock();
+        try {
+            write.accept(trie);
+            if (rebuilding != null) {
+                write.accept(rebuilding);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    // The smallest string greater than every string starting with prefix
+    private static String upperBound(String prefix) {
+        int last = prefix.length() - 1;
+        return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+    }
+}
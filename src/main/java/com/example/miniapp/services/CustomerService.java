@@ -1,64 +1,229 @@
 package com.example.miniapp.services;
 
+import com.example.miniapp.config.SecondLevelCacheConfig;
+import com.example.miniapp.models.CacheStatistics;
+import com.example.miniapp.models.CursorPage;
 import com.example.miniapp.models.Customer;
+import com.example.miniapp.models.CustomerTripSummary;
+import com.example.miniapp.models.KeyFilterStatistics;
 import com.example.miniapp.repositories.CustomerRepository;
+import com.example.miniapp.utils.EntityStreams;
+import com.example.miniapp.utils.PartialUpdate;
+import jakarta.persistence.EntityManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @Transactional
 public class CustomerService {
 
+    private static final int DELETE_CHUNK_SIZE = 1000;
+
     private final CustomerRepository customerRepository;
+    private final UniqueKeyFilters uniqueKeyFilters;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final TripService tripService;
+    private final CustomerSummaryService customerSummaryService;
+    private final CustomerPhoneIndex customerPhoneIndex;
+    private final SecondLevelCache secondLevelCache;
 
     @Autowired
-    public CustomerService(CustomerRepository customerRepository) {
+    public CustomerService(CustomerRepository customerRepository, UniqueKeyFilters uniqueKeyFilters,
+                           EntityManager entityManager, JdbcTemplate jdbcTemplate, TripService tripService,
+                           CustomerSummaryService customerSummaryService,
+                           CustomerPhoneIndex customerPhoneIndex, SecondLevelCache secondLevelCache) {
         this.customerRepository = customerRepository;
+        this.uniqueKeyFilters = uniqueKeyFilters;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tripService = tripService;
+        this.customerSummaryService = customerSummaryService;
+        this.customerPhoneIndex = customerPhoneIndex;
+        this.secondLevelCache = secondLevelCache;
     }
 
     public List<Customer> getAllCustomers() {
         return customerRepository.findAll();
     }
 
+    public CursorPage<Customer> getCustomersPage(Long afterId, int size) {
+        int pageSize = CursorPage.pageSize(size);
+        List<Customer> customers = customerRepository.findByIdGreaterThanOrderByIdAsc(afterId == null ? 0L : afterId,
+                PageRequest.of(0, pageSize));
+        String nextCursor = customers.size() < pageSize ? null : String.valueOf(customers.get(customers.size() - 1).getId());
+        return new CursorPage<>(customers, nextCursor);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllCustomers(Consumer<? super Customer> consumer) {
+        EntityStreams.forEach(customerRepository.streamAllOrderedById(), entityManager, consumer);
+    }
+
     public Customer getCustomerById(Long id) {
         return customerRepository.findById(id)
                 .orElse(null);
     }
 
     public Customer addCustomer(Customer customer) {
-        return customerRepository.save(customer);
+        // Reject a duplicate email up front instead of failing on the unique constraint
+        if (customer != null && uniqueKeyFilters.isEmailTaken(customer.getEmail())) {
+            return null;
+        }
+
+        Customer savedCustomer = customerRepository.save(customer);
+        uniqueKeyFilters.recordEmail(savedCustomer.getEmail());
+        customerPhoneIndex.put(savedCustomer);
+        return savedCustomer;
     }
 
     public Customer updateCustomer(Long id, Customer customerDetails) {
         return customerRepository.findById(id)
                 .map(existingCustomer -> {
+                    if (!Objects.equals(existingCustomer.getEmail(), customerDetails.getEmail())
+                            && uniqueKeyFilters.isEmailTaken(customerDetails.getEmail())) {
+                        return null;
+                    }
+                    String previousPhoneNumber = existingCustomer.getPhoneNumber();
                     existingCustomer.setName(customerDetails.getName());
                     existingCustomer.setEmail(customerDetails.getEmail());
                     existingCustomer.setPhoneNumber(customerDetails.getPhoneNumber());
                     // Note: Handling the 'trips' list update might require more specific logic
-                    return customerRepository.save(existingCustomer);
+                    Customer savedCustomer = customerRepository.save(existingCustomer);
+                    uniqueKeyFilters.recordEmail(savedCustomer.getEmail());
+                    customerPhoneIndex.update(id, previousPhoneNumber, savedCustomer.getPhoneNumber());
+                    return savedCustomer;
                 })
                 .orElse(null);
     }
 
+    // Partial update in a single statement: only the provided fields are written. An email
+    // used by another customer updates nothing, like updateCustomer. Returns the number of
+    // customers updated.
+    public int patchCustomer(Long id, Customer customerDetails) {
+        if (customerDetails == null) {
+            return 0;
+        }
+        PartialUpdate update = new PartialUpdate()
+                .set("name", customerDetails.getName())
+                .set("email", customerDetails.getEmail())
+                .set("phone_number", customerDetails.getPhoneNumber());
+        if (update.isEmpty()) {
+            return 0;
+        }
+
+        String email = customerDetails.getEmail();
+        List<String[]> phoneNumbers;
+        try {
+            phoneNumbers = jdbcTemplate.query("UPDATE customers c SET " + update.setClause() + " FROM (" +
+                            "SELECT id, phone_number FROM customers WHERE id = ? FOR UPDATE) old WHERE c.id = old.id" +
+                            (email == null ? "" : " AND NOT EXISTS (SELECT 1 FROM customers other " +
+                                    "WHERE other.email = ? AND other.id <> c.id)") +
+                            " RETURNING old.phone_number AS old_phone_number, c.phone_number",
+                    (rs, rowNum) -> new String[]{rs.getString("old_phone_number"), rs.getString("phone_number")},
+                    email == null ? update.parameters(id) : update.parameters(id, email));
+        } catch (DataIntegrityViolationException e) {
+            // Another customer took the email concurrently
+            return 0;
+        }
+
+        for (String[] phoneNumber : phoneNumbers) {
+            uniqueKeyFilters.recordEmail(email);
+            customerPhoneIndex.update(id, phoneNumber[0], phoneNumber[1]);
+        }
+        if (!phoneNumbers.isEmpty()) {
+            secondLevelCache.evictCustomers(List.of(id));
+            secondLevelCache.evictQueryResults();
+        }
+        return phoneNumbers.size();
+    }
+
     public String deleteCustomer(Long id) {
-        return customerRepository.findById(id)
-                .map(customer -> {
-                    customerRepository.delete(customer);
-                    return "Customer deleted successfully";
-                }).orElse(null);
+        return deleteCustomers(Collections.singletonList(id)) > 0 ? "Customer deleted successfully" : null;
+    }
+
+    // Deletes the customers with their trips and payments in a few set-based statements per
+    // DELETE_CHUNK_SIZE ids, without loading any of them. Returns the number of customers deleted.
+    public int deleteCustomers(List<Long> ids) {
+        if (ids == null) {
+            return 0;
+        }
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+
+        int deleted = 0;
+        for (int from = 0; from < distinctIds.size(); from += DELETE_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + DELETE_CHUNK_SIZE, distinctIds.size()));
+            tripService.deleteTripsByCustomerIds(chunk);
+            List<Customer> removed = jdbcTemplate.query("DELETE FROM customers WHERE id IN (" +
+                            String.join(", ", Collections.nCopies(chunk.size(), "?")) + ") RETURNING id, phone_number",
+                    (rs, rowNum) -> new Customer(rs.getLong("id"), null, null, rs.getString("phone_number")),
+                    chunk.toArray());
+            removed.forEach(customerPhoneIndex::remove);
+            customerSummaryService.recordCustomersRemoved(chunk);
+            secondLevelCache.evictCustomers(chunk);
+            deleted += removed.size();
+        }
+        secondLevelCache.evictQueryResults();
+        return deleted;
+    }
+
+    // One page of the customers whose email is at the domain, in id order, through the domain index
+    public CursorPage<Customer> getCustomersByEmailDomainPage(String domain, Long afterId, int size) {
+        String normalizedDomain = normalizeDomain(domain);
+        if (normalizedDomain.isEmpty()) {
+            return new CursorPage<>(List.of(), null);
+        }
+        int pageSize = CursorPage.pageSize(size);
+        List<Customer> customers = customerRepository.findByEmailDomain(normalizedDomain,
+                afterId == null ? 0L : afterId, pageSize);
+        String nextCursor = customers.size() < pageSize ? null : String.valueOf(customers.get(customers.size() - 1).getId());
+        return new CursorPage<>(customers, nextCursor);
+    }
+
+    public List<Customer> findCustomersByPhonePrefix(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        return customerPhoneIndex.findByPrefix(prefix.trim(), CursorPage.pageSize(limit));
+    }
+
+    public CustomerTripSummary getCustomerSummary(Long id) {
+        if (!customerRepository.existsById(id)) {
+            return null;
+        }
+        return customerSummaryService.getSummary(id);
+    }
+
+    // Recomputes every customer's summary; used to backfill after imports or schema changes
+    public int rebuildCustomerSummaries() {
+        return customerSummaryService.rebuild();
+    }
+
+    public List<CacheStatistics> getCacheStatistics() {
+        return secondLevelCache.getStatistics(SecondLevelCacheConfig.CUSTOMERS_REGION);
     }
 
-    // Example using custom repository method
-    public List<Customer> findCustomersByEmailDomain(String email) {
-        return customerRepository.findByEmail(email);
+    public KeyFilterStatistics getEmailFilterStatistics() {
+        return uniqueKeyFilters.getEmailStatistics();
     }
 
-    public List<Customer> findCustomersByPhonePrefix(String  phoneNumber) {
-        return customerRepository.findByPhoneNumber(phoneNumber);
+    // "@Corp.com " and "corp.com" both mean corp.com
+    private static String normalizeDomain(String domain) {
+        if (domain == null) {
+            return "";
+        }
+        String normalized = domain.trim().toLowerCase(Locale.ROOT);
+        return normalized.startsWith("@") ? normalized.substring(1) : normalized;
     }
 }
@@ -0,0 +1,640 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.CustomerSummary;
+import com.example.miniapp.models.CustomerTripSummary;
+import com.example.miniapp.models.Trip;
+import com.example.miniapp.models.TripSummary;
+import com.example.miniapp.utils.AfterCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+// Keeps one customer_summaries document per customer up to date with $inc deltas applied
+// once the trip and payment writes in TripService and PaymentService commit, so a customer's
+// lifetime value is a single _id lookup. rebuild() recomputes every document from the
+// trips table and the trip archive, one slice of customer ids per thread; it backfills
+// the collection at startup and runs nightly to correct any drift. Until the first
+// rebuild finishes, summaries are computed from the trips table instead. Changes that
+// commit after a slice's snapshot are also kept for the slice and added to its rebuilt
+// summaries, so replacing them loses none and counts none twice.
+@Service
+public class CustomerSummaryService {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerSummaryService.class);
+
+    private static final String SUMMARY_SELECT = "SELECT t.customer_id, COUNT(*) AS trips, " +
+            "COALESCE(SUM(t.trip_cost), 0) AS cost, MIN(t.trip_date) AS first_trip, MAX(t.trip_date) AS last_trip, " +
+            "COALESCE(SUM(p.amount) FILTER (WHERE p.payment_status), 0) AS paid " +
+            "FROM trips t LEFT JOIN payments p ON p.trip_id = t.id ";
+
+    private final MongoTemplate mongoTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final TransactionTemplate transactionTemplate;
+    private final TripArchive tripArchive;
+    private final boolean enabled;
+    private final int rebuildParallelism;
+    private final int rebuildSliceSize;
+
+    // Changes committed after the snapshot of a slice being rebuilt, by slice start and customer
+    private final Map<Long, Map<Long, PendingChange>> pendingBySlice = new ConcurrentHashMap<>();
+    // Writers hold the read lock from before their commit until their change is applied. A
+    // slice takes the write lock to start its snapshot and again to replace its summaries.
+    private final ReadWriteLock sliceLock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    @Autowired
+    public CustomerSummaryService(MongoTemplate mongoTemplate, JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager, TripArchive tripArchive,
+                                  @Value("${customer.summary.enabled:true}") boolean enabled,
+                                  @Value("${customer.summary.rebuild-parallelism:0}") int rebuildParallelism,
+                                  @Value("${customer.summary.rebuild-slice-size:10000}") int rebuildSliceSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setReadOnly(true);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tripArchive = tripArchive;
+        this.enabled = enabled;
+        this.rebuildParallelism = rebuildParallelism > 0 ? rebuildParallelism : Runtime.getRuntime().availableProcessors();
+        this.rebuildSliceSize = rebuildSliceSize;
+    }
+
+
+    public void recordTripAdded(Trip trip) {
+        if (enabled && customerIdOf(trip) != null) {
+            SummaryDelta delta = new SummaryDelta(customerIdOf(trip));
+            delta.add(1, trip.getTripDate(), trip.getTripCost(), paidAmountOf(trip), trip.getOrigin(),
+                    trip.getDestination());
+            AfterCommit.run(() -> {
+                keepForRebuild(delta, false);
+                mongoTemplate.upsert(delta.query(), delta.update(), CustomerSummary.class);
+            }, sliceLock.readLock());
+        }
+    }
+
+
+    // Folds a batch into one delta per customer and applies them in a single bulk write
+    public void recordTripsAdded(List<Trip> trips) {
+        if (!enabled) {
+            return;
+        }
+        Map<Long, SummaryDelta> deltas = new LinkedHashMap<>();
+        for (Trip trip : trips) {
+            Long customerId = customerIdOf(trip);
+            if (customerId != null) {
+                deltas.computeIfAbsent(customerId, SummaryDelta::new)
+                        .add(1, trip.getTripDate(), trip.getTripCost(), paidAmountOf(trip), trip.getOrigin(),
+                                trip.getDestination());
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        AfterCommit.run(() -> {
+            deltas.values().forEach(delta -> keepForRebuild(delta, false));
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                    CustomerSummary.class);
+            for (SummaryDelta delta : deltas.values()) {
+                bulkOperations.upsert(delta.query(), delta.update());
+            }
+            bulkOperations.execute();
+        }, sliceLock.readLock());
+    }
+
+
+    // A removed first or last trip is replaced by querying the customer's remaining trips
+    public void recordTripRemoved(Long customerId, LocalDateTime tripDate, Double tripCost, double paidAmount,
+                                  String origin, String destination) {
+        if (enabled && customerId != null) {
+            AfterCommit.run(() -> applyTripRemoved(customerId, tripDate, tripCost, paidAmount, origin, destination),
+                    sliceLock.readLock());
+        }
+    }
+
+
+    // Paid amounts count a payment's amount while its status is paid, and zero otherwise
+    public void recordPaymentChanged(Long customerId, double previousPaidAmount, double paidAmount) {
+        if (enabled && customerId != null && previousPaidAmount != paidAmount) {
+            AfterCommit.run(() -> {
+                SummaryDelta delta = new SummaryDelta(customerId);
+                delta.addPaid(paidAmount - previousPaidAmount);
+                keepForRebuild(delta, false);
+                mongoTemplate.upsert(Query.query(Criteria.where("_id").is(customerId)),
+                        new Update().inc("totalPaid", paidAmount - previousPaidAmount), CustomerSummary.class);
+            }, sliceLock.readLock());
+        }
+    }
+
+
+    // Set-based counterpart of recordTripRemoved: one bulk write of folded deltas, then one
+    // query for the remaining first and last trips of the affected customers
+    public void recordTripsRemoved(List<TripSummary> trips) {
+        if (enabled) {
+            AfterCommit.run(() -> applyTripsRemoved(trips), sliceLock.readLock());
+        }
+    }
+
+
+    public void recordCustomersRemoved(Collection<Long> customerIds) {
+        if (enabled && !customerIds.isEmpty()) {
+            AfterCommit.run(() -> {
+                customerIds.forEach(customerId -> {
+                    PendingChange change = pendingChange(customerId);
+                    if (change != null) {
+                        change.markCustomerRemoved();
+                    }
+                });
+                mongoTemplate.remove(Query.query(Criteria.where("_id").in(customerIds)), CustomerSummary.class);
+            }, sliceLock.readLock());
+        }
+    }
+
+
+    public CustomerTripSummary getSummary(Long customerId) {
+        if (!enabled || !ready) {
+            return querySummary(customerId);
+        }
+        CustomerSummary summary = mongoTemplate.findById(customerId, CustomerSummary.class);
+        if (summary == null) {
+            return new CustomerTripSummary(customerId, 0, 0, 0, null, null, null, null);
+        }
+        return new CustomerTripSummary(customerId, summary.getTripCount(), summary.getTotalTripCost(),
+                summary.getTotalPaid(), summary.getFirstTripDate(), summary.getLastTripDate(),
+                mostFrequent(summary.getOrigins()), mostFrequent(summary.getDestinations()));
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${customer.summary.rebuild-cron:0 25 4 * * *}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+
+    // Replaces every summary with one computed from the trips table and the archive.
+    // Customer ids are split into slices of rebuild-slice-size ids that are rebuilt in
+    // parallel, each from its own snapshot. Returns the number of customers rebuilt.
+    public synchronized int rebuild() {
+        if (!enabled) {
+            return 0;
+        }
+
+        Map<Long, CustomerSummary> archived = new HashMap<>();
+        tripArchive.forEachArchived(trip -> {
+            if (trip.getCustomerId() != null) {
+                add(archived.computeIfAbsent(trip.getCustomerId(), CustomerSummaryService::emptySummary), trip);
+            }
+        });
+
+        Long maxId = jdbcTemplate.queryForObject("SELECT GREATEST((SELECT MAX(id) FROM customers), " +
+                "(SELECT MAX(customer_id) FROM trips))", Long.class);
+        long lastId = Math.max(maxId == null ? 0 : maxId,
+                archived.keySet().stream().mapToLong(Long::longValue).max().orElse(0));
+
+        ExecutorService executor = Executors.newFixedThreadPool(rebuildParallelism);
+        try {
+            List<Future<Integer>> slices = new ArrayList<>();
+            for (long from = 1; from <= lastId; from += rebuildSliceSize) {
+                long sliceStart = from;
+                long sliceEnd = Math.min(from + rebuildSliceSize - 1, lastId);
+                slices.add(executor.submit(() -> rebuildSlice(sliceStart, sliceEnd, archived)));
+            }
+            int rebuilt = 0;
+            for (Future<Integer> slice : slices) {
+                rebuilt += slice.get();
+            }
+            ready = true;
+            log.debug("Customer summaries rebuilt for {} customers", rebuilt);
+            return rebuilt;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Customer summary rebuild was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Customer summary rebuild failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void applyTripRemoved(Long customerId, LocalDateTime tripDate, Double tripCost, double paidAmount,
+                                  String origin, String destination) {
+        SummaryDelta delta = new SummaryDelta(customerId);
+        delta.add(-1, null, tripCost, paidAmount, origin, destination);
+        keepForRebuild(delta, true);
+        CustomerSummary summary = mongoTemplate.findAndModify(delta.query(), delta.update(),
+                FindAndModifyOptions.options().returnNew(true).upsert(true), CustomerSummary.class);
+        if (summary == null || tripDate == null) {
+            return;
+        }
+
+        if (summary.getTripCount() <= 0) {
+            mongoTemplate.remove(delta.query(), CustomerSummary.class);
+        } else if (tripDate.equals(summary.getFirstTripDate()) || tripDate.equals(summary.getLastTripDate())) {
+            // The customer/date index makes this cheap; archived trips are folded back in by rebuild()
+            jdbcTemplate.query("SELECT MIN(trip_date) AS first_trip, MAX(trip_date) AS last_trip FROM trips " +
+                    "WHERE customer_id = ?", rs -> {
+                mongoTemplate.updateFirst(delta.query(), new Update()
+                        .set("firstTripDate", toLocalDateTime(rs.getTimestamp("first_trip")))
+                        .set("lastTripDate", toLocalDateTime(rs.getTimestamp("last_trip"))), CustomerSummary.class);
+            }, customerId);
+        }
+    }
+
+    private void applyTripsRemoved(List<TripSummary> trips) {
+        Map<Long, SummaryDelta> deltas = new LinkedHashMap<>();
+        for (TripSummary trip : trips) {
+            if (trip.getCustomerId() != null) {
+                double paidAmount = Boolean.TRUE.equals(trip.getPaymentStatus()) && trip.getPaymentAmount() != null
+                        ? trip.getPaymentAmount() : 0;
+                deltas.computeIfAbsent(trip.getCustomerId(), SummaryDelta::new)
+                        .add(-1, null, trip.getTripCost(), paidAmount, trip.getOrigin(), trip.getDestination());
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        deltas.values().forEach(delta -> keepForRebuild(delta, true));
+
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CustomerSummary.class);
+        for (SummaryDelta delta : deltas.values()) {
+            bulkOperations.updateOne(delta.query(), delta.update());
+        }
+        String placeholders = String.join(", ", Collections.nCopies(deltas.size(), "?"));
+        jdbcTemplate.query("SELECT customer_id, MIN(trip_date) AS first_trip, MAX(trip_date) AS last_trip " +
+                "FROM trips WHERE customer_id IN (" + placeholders + ") GROUP BY customer_id", rs -> {
+            bulkOperations.updateOne(Query.query(Criteria.where("_id").is(rs.getLong("customer_id"))), new Update()
+                    .set("firstTripDate", toLocalDateTime(rs.getTimestamp("first_trip")))
+                    .set("lastTripDate", toLocalDateTime(rs.getTimestamp("last_trip"))));
+        }, deltas.keySet().toArray());
+        bulkOperations.execute();
+        mongoTemplate.remove(Query.query(Criteria.where("_id").in(deltas.keySet()).and("tripCount").lte(0)),
+                CustomerSummary.class);
+    }
+
+    // Loads the slice from a snapshot started while no write is between its commit and
+    // its change, then replaces its summaries with the loaded ones plus the changes
+    // committed since
+    private int rebuildSlice(long sliceStart, long sliceEnd, Map<Long, CustomerSummary> archived) {
+        try {
+            Map<Long, CustomerSummary> summaries = snapshotTransaction.execute(status -> {
+                sliceLock.writeLock().lock();
+                try {
+                    jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+                    pendingBySlice.put(sliceStart, new ConcurrentHashMap<>());
+                } finally {
+                    sliceLock.writeLock().unlock();
+                }
+                return loadSlice(sliceStart, sliceEnd, archived);
+            });
+            // In a transaction so its connection is taken before the write lock, which
+            // writers waiting for the lock may otherwise have exhausted
+            return transactionTemplate.execute(status -> replaceSlice(sliceStart, sliceEnd, summaries, archived));
+        } finally {
+            pendingBySlice.remove(sliceStart);
+        }
+    }
+
+    private Map<Long, CustomerSummary> loadSlice(long sliceStart, long sliceEnd, Map<Long, CustomerSummary> archived) {
+        Map<Long, CustomerSummary> summaries = new LinkedHashMap<>();
+        jdbcTemplate.query(SUMMARY_SELECT + "WHERE t.customer_id BETWEEN ? AND ? GROUP BY t.customer_id", rs -> {
+            CustomerSummary summary = emptySummary(rs.getLong("customer_id"));
+            summary.setTripCount(rs.getLong("trips"));
+            summary.setTotalTripCost(rs.getDouble("cost"));
+            summary.setTotalPaid(rs.getDouble("paid"));
+            summary.setFirstTripDate(toLocalDateTime(rs.getTimestamp("first_trip")));
+            summary.setLastTripDate(toLocalDateTime(rs.getTimestamp("last_trip")));
+            summaries.put(summary.getId(), summary);
+        }, sliceStart, sliceEnd);
+        jdbcTemplate.query("SELECT customer_id, origin, COUNT(*) AS trips FROM trips " +
+                "WHERE customer_id BETWEEN ? AND ? AND origin IS NOT NULL GROUP BY customer_id, origin", rs -> {
+            summaries.computeIfAbsent(rs.getLong("customer_id"), CustomerSummaryService::emptySummary).getOrigins()
+                    .put(encodeKey(rs.getString("origin")), rs.getLong("trips"));
+        }, sliceStart, sliceEnd);
+        jdbcTemplate.query("SELECT customer_id, destination, COUNT(*) AS trips FROM trips " +
+                "WHERE customer_id BETWEEN ? AND ? AND destination IS NOT NULL GROUP BY customer_id, destination", rs -> {
+            summaries.computeIfAbsent(rs.getLong("customer_id"), CustomerSummaryService::emptySummary).getDestinations()
+                    .put(encodeKey(rs.getString("destination")), rs.getLong("trips"));
+        }, sliceStart, sliceEnd);
+
+        archived.forEach((customerId, fromArchive) -> {
+            if (customerId >= sliceStart && customerId <= sliceEnd) {
+                merge(summaries.computeIfAbsent(customerId, CustomerSummaryService::emptySummary), fromArchive);
+            }
+        });
+        return summaries;
+    }
+
+    // Holds the write lock while the slice's summaries are written, so trip writes of any
+    // customer wait for one bulk write of at most rebuild-slice-size documents
+    private int replaceSlice(long sliceStart, long sliceEnd, Map<Long, CustomerSummary> summaries,
+                             Map<Long, CustomerSummary> archived) {
+        sliceLock.writeLock().lock();
+        try {
+            Set<Long> staleTripDates = new HashSet<>();
+            pendingBySlice.remove(sliceStart).forEach((customerId, change) -> {
+                if (change.customerRemoved) {
+                    summaries.remove(customerId);
+                    return;
+                }
+                change.delta.applyTo(summaries.computeIfAbsent(customerId, CustomerSummaryService::emptySummary));
+                if (change.tripRemoved) {
+                    staleTripDates.add(customerId);
+                }
+            });
+            summaries.values().removeIf(summary -> summary.getTripCount() <= 0);
+            staleTripDates.retainAll(summaries.keySet());
+            refreshTripDates(summaries, staleTripDates, archived);
+            writeSlice(sliceStart, sliceEnd, summaries);
+            return summaries.size();
+        } finally {
+            sliceLock.writeLock().unlock();
+        }
+    }
+
+    private void writeSlice(long sliceStart, long sliceEnd, Map<Long, CustomerSummary> summaries) {
+        if (!summaries.isEmpty()) {
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                    CustomerSummary.class);
+            for (CustomerSummary summary : summaries.values()) {
+                bulkOperations.replaceOne(Query.query(Criteria.where("_id").is(summary.getId())), summary,
+                        FindAndReplaceOptions.options().upsert());
+            }
+            bulkOperations.execute();
+        }
+        // Customers in the slice without any trips left have no summary
+        mongoTemplate.remove(Query.query(Criteria.where("_id").gte(sliceStart).lte(sliceEnd)
+                .nin(summaries.keySet())), CustomerSummary.class);
+    }
+
+    // First and last trip dates of customers that lost a trip after the snapshot, from the
+    // trips table as it is now and the archive
+    private void refreshTripDates(Map<Long, CustomerSummary> summaries, Set<Long> customerIds,
+                                  Map<Long, CustomerSummary> archived) {
+        if (customerIds.isEmpty()) {
+            return;
+        }
+        customerIds.forEach(customerId -> {
+            CustomerSummary fromArchive = archived.get(customerId);
+            summaries.get(customerId).setFirstTripDate(fromArchive == null ? null : fromArchive.getFirstTripDate());
+            summaries.get(customerId).setLastTripDate(fromArchive == null ? null : fromArchive.getLastTripDate());
+        });
+        String placeholders = String.join(", ", Collections.nCopies(customerIds.size(), "?"));
+        jdbcTemplate.query("SELECT customer_id, MIN(trip_date) AS first_trip, MAX(trip_date) AS last_trip " +
+                "FROM trips WHERE customer_id IN (" + placeholders + ") GROUP BY customer_id", rs -> {
+            CustomerSummary fromTrips = emptySummary(rs.getLong("customer_id"));
+            fromTrips.setFirstTripDate(toLocalDateTime(rs.getTimestamp("first_trip")));
+            fromTrips.setLastTripDate(toLocalDateTime(rs.getTimestamp("last_trip")));
+            merge(summaries.get(fromTrips.getId()), fromTrips);
+        }, customerIds.toArray());
+    }
+
+    // Called by writers holding the read lock; null unless the customer's slice is being rebuilt
+    private PendingChange pendingChange(Long customerId) {
+        Map<Long, PendingChange> slice = pendingBySlice.get((customerId - 1) / rebuildSliceSize * rebuildSliceSize + 1);
+        return slice == null ? null : slice.computeIfAbsent(customerId, PendingChange::new);
+    }
+
+    private void keepForRebuild(SummaryDelta delta, boolean tripRemoved) {
+        PendingChange change = pendingChange(delta.customerId);
+        if (change != null) {
+            change.add(delta, tripRemoved);
+        }
+    }
+
+    // Used until the first rebuild has finished, or when the summaries are disabled
+    private CustomerTripSummary querySummary(Long customerId) {
+        String topOrigin = jdbcTemplate.query("SELECT origin FROM trips WHERE customer_id = ? AND origin IS NOT NULL " +
+                        "GROUP BY origin ORDER BY COUNT(*) DESC, origin LIMIT 1", (rs, rowNum) -> rs.getString(1),
+                customerId).stream().findFirst().orElse(null);
+        String topDestination = jdbcTemplate.query("SELECT destination FROM trips WHERE customer_id = ? " +
+                        "AND destination IS NOT NULL GROUP BY destination ORDER BY COUNT(*) DESC, destination LIMIT 1",
+                (rs, rowNum) -> rs.getString(1), customerId).stream().findFirst().orElse(null);
+        return jdbcTemplate.query(SUMMARY_SELECT + "WHERE t.customer_id = ? GROUP BY t.customer_id",
+                        (rs, rowNum) -> new CustomerTripSummary(customerId, rs.getLong("trips"), rs.getDouble("cost"),
+                                rs.getDouble("paid"), toLocalDateTime(rs.getTimestamp("first_trip")),
+                                toLocalDateTime(rs.getTimestamp("last_trip")), topOrigin, topDestination),
+                        customerId)
+                .stream()
+                .findFirst()
+                .orElse(new CustomerTripSummary(customerId, 0, 0, 0, null, null, null, null));
+    }
+
+    private static CustomerSummary emptySummary(Long customerId) {
+        CustomerSummary summary = new CustomerSummary();
+        summary.setId(customerId);
+        return summary;
+    }
+
+    private static void add(CustomerSummary summary, TripSummary trip) {
+        CustomerSummary single = emptySummary(summary.getId());
+        single.setTripCount(1);
+        single.setTotalTripCost(trip.getTripCost() == null ? 0 : trip.getTripCost());
+        single.setTotalPaid(Boolean.TRUE.equals(trip.getPaymentStatus()) && trip.getPaymentAmount() != null
+                ? trip.getPaymentAmount() : 0);
+        single.setFirstTripDate(trip.getTripDate());
+        single.setLastTripDate(trip.getTripDate());
+        if (trip.getOrigin() != null) {
+            single.getOrigins().put(encodeKey(trip.getOrigin()), 1L);
+        }
+        if (trip.getDestination() != null) {
+            single.getDestinations().put(encodeKey(trip.getDestination()), 1L);
+        }
+        merge(summary, single);
+    }
+
+    private static void merge(CustomerSummary target, CustomerSummary source) {
+        target.setTripCount(target.getTripCount() + source.getTripCount());
+        target.setTotalTripCost(target.getTotalTripCost() + source.getTotalTripCost());
+        target.setTotalPaid(target.getTotalPaid() + source.getTotalPaid());
+        if (source.getFirstTripDate() != null && (target.getFirstTripDate() == null
+                || source.getFirstTripDate().isBefore(target.getFirstTripDate()))) {
+            target.setFirstTripDate(source.getFirstTripDate());
+        }
+        if (source.getLastTripDate() != null && (target.getLastTripDate() == null
+                || source.getLastTripDate().isAfter(target.getLastTripDate()))) {
+            target.setLastTripDate(source.getLastTripDate());
+        }
+        source.getOrigins().forEach((key, count) -> target.getOrigins().merge(key, count, Long::sum));
+        source.getDestinations().forEach((key, count) -> target.getDestinations().merge(key, count, Long::sum));
+    }
+
+    private static String mostFrequent(Map<String, Long> counts) {
+        if (counts == null) {
+            return null;
+        }
+        String top = null;
+        long topCount = 0;
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            if (entry.getValue() > topCount) {
+                top = entry.getKey();
+                topCount = entry.getValue();
+            }
+        }
+        return top == null ? null : decodeKey(top);
+    }
+
+    // Mongo field names cannot contain '.' or start with '$'
+    private static String encodeKey(String value) {
+        return value.replace("%", "%25").replace(".", "%2E").replace("$", "%24");
+    }
+
+    private static String decodeKey(String key) {
+        return key.replace("%2E", ".").replace("%24", "$").replace("%25", "%");
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+    private static Long customerIdOf(Trip trip) {
+        return trip.getCustomer() == null ? null : trip.getCustomer().getId();
+    }
+
+    // New trips have no payment yet; one added later arrives through recordPaymentChanged
+    private static double paidAmountOf(Trip trip) {
+        return trip.getPayment() == null ? 0 : PaymentService.paidAmountOf(trip.getPayment());
+    }
+
+
+    private static class SummaryDelta {
+
+        private final Long customerId;
+        private long count;
+        private double cost;
+        private double paid;
+        private LocalDateTime firstTripDate;
+        private LocalDateTime lastTripDate;
+        private final Map<String, Long> origins = new LinkedHashMap<>();
+        private final Map<String, Long> destinations = new LinkedHashMap<>();
+
+        SummaryDelta(Long customerId) {
+            this.customerId = customerId;
+        }
+
+        void add(int direction, LocalDateTime tripDate, Double tripCost, double paidAmount, String origin,
+                 String destination) {
+            count += direction;
+            cost += direction * (tripCost == null ? 0 : tripCost);
+            paid += direction * paidAmount;
+            if (tripDate != null) {
+                firstTripDate = firstTripDate == null || tripDate.isBefore(firstTripDate) ? tripDate : firstTripDate;
+                lastTripDate = lastTripDate == null || tripDate.isAfter(lastTripDate) ? tripDate : lastTripDate;
+            }
+            if (origin != null) {
+                origins.merge(encodeKey(origin), (long) direction, Long::sum);
+            }
+            if (destination != null) {
+                destinations.merge(encodeKey(destination), (long) direction, Long::sum);
+            }
+        }
+
+        void addPaid(double paidAmount) {
+            paid += paidAmount;
+        }
+
+        void addAll(SummaryDelta other) {
+            count += other.count;
+            cost += other.cost;
+            paid += other.paid;
+            if (other.firstTripDate != null && (firstTripDate == null || other.firstTripDate.isBefore(firstTripDate))) {
+                firstTripDate = other.firstTripDate;
+            }
+            if (other.lastTripDate != null && (lastTripDate == null || other.lastTripDate.isAfter(lastTripDate))) {
+                lastTripDate = other.lastTripDate;
+            }
+            other.origins.forEach((key, delta) -> origins.merge(key, delta, Long::sum));
+            other.destinations.forEach((key, delta) -> destinations.merge(key, delta, Long::sum));
+        }
+
+        void applyTo(CustomerSummary summary) {
+            CustomerSummary change = emptySummary(customerId);
+            change.setTripCount(count);
+            change.setTotalTripCost(cost);
+            change.setTotalPaid(paid);
+            change.setFirstTripDate(firstTripDate);
+            change.setLastTripDate(lastTripDate);
+            change.setOrigins(origins);
+            change.setDestinations(destinations);
+            merge(summary, change);
+        }
+
+        Query query() {
+            return Query.query(Criteria.where("_id").is(customerId));
+        }
+
+        Update update() {
+            Update update = new Update()
+                    .inc("tripCount", count)
+                    .inc("totalTripCost", cost)
+                    .inc("totalPaid", paid);
+            if (firstTripDate != null) {
+                update.min("firstTripDate", firstTripDate);
+                update.max("lastTripDate", lastTripDate);
+            }
+            origins.forEach((key, delta) -> update.inc("origins." + key, delta));
+            destinations.forEach((key, delta) -> update.inc("destinations." + key, delta));
+            return update;
+        }
+    }
+
+
+    // What was committed for a customer after the snapshot of its slice
+    private static class PendingChange {
+
+        private final SummaryDelta delta;
+        private boolean tripRemoved;
+        private boolean customerRemoved;
+
+        PendingChange(Long customerId) {
+            this.delta = new SummaryDelta(customerId);
+        }
+
+        synchronized void add(SummaryDelta change, boolean removesTrip) {
+            delta.addAll(change);
+            tripRemoved |= removesTrip;
+        }
+
+        synchronized void markCustomerRemoved() {
+            customerRemoved = true;
+        }
+    }
+}
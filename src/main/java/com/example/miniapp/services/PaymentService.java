@@ -1,27 +1,58 @@
 package com.example.miniapp.services;
 
+import com.example.miniapp.models.CursorPage;
 import com.example.miniapp.models.Payment;
 import com.example.miniapp.models.Trip;
 import com.example.miniapp.repositories.PaymentRepository;
 import com.example.miniapp.repositories.TripRepository;
+import com.example.miniapp.utils.EntityStreams;
+import com.example.miniapp.utils.PartialUpdate;
+import jakarta.persistence.EntityManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 
 @Service
 public class PaymentService {
 
+    private record PaymentChange(Long captainId, Long customerId, boolean wasPaid, Double previousAmount,
+                                 boolean isPaid, Double amount) {
+    }
+
     private final PaymentRepository paymentRepository;
     private final TripRepository tripRepository;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final CaptainTripStatistics captainTripStatistics;
+    private final CustomerSummaryService customerSummaryService;
+    private final int batchSize;
 
     @Autowired
-    public PaymentService(PaymentRepository paymentRepository, TripRepository tripRepository) {
+    public PaymentService(PaymentRepository paymentRepository, TripRepository tripRepository,
+                          EntityManager entityManager, JdbcTemplate jdbcTemplate,
+                          CaptainTripStatistics captainTripStatistics,
+                          CustomerSummaryService customerSummaryService,
+                          @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
         this.paymentRepository = paymentRepository;
         this.tripRepository = tripRepository;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.captainTripStatistics = captainTripStatistics;
+        this.customerSummaryService = customerSummaryService;
+        this.batchSize = batchSize;
     }
 
 
@@ -38,7 +69,50 @@ public class PaymentService {
             payment.setTrip(trip);
         }
 
-        return paymentRepository.save(payment);
+        Payment savedPayment = paymentRepository.save(payment);
+        captainTripStatistics.recordPaymentChanged(captainIdOf(savedPayment), false, isPaid(savedPayment));
+        customerSummaryService.recordPaymentChanged(customerIdOf(savedPayment), 0, paidAmountOf(savedPayment));
+        return savedPayment;
+    }
+
+
+    // Same trip handling as addPayment, but the referenced trips are loaded with one
+    // query per batch and the payments are inserted in JDBC batches
+    @Transactional
+    public List<Payment> addPayments(List<Payment> payments) {
+        if (payments == null || payments.isEmpty()) {
+            throw new IllegalArgumentException("At least one payment is required");
+        }
+
+        List<Payment> saved = new ArrayList<>(payments.size());
+        for (int from = 0; from < payments.size(); from += batchSize) {
+            List<Payment> batch = payments.subList(from, Math.min(from + batchSize, payments.size()));
+
+            List<Long> tripIds = batch.stream()
+                    .map(Payment::getTrip)
+                    .filter(Objects::nonNull)
+                    .map(Trip::getId)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .toList();
+            Map<Long, Trip> trips = tripRepository.findAllById(tripIds).stream()
+                    .collect(Collectors.toMap(Trip::getId, Function.identity()));
+            for (Payment payment : batch) {
+                if (payment.getTrip() != null) {
+                    payment.setTrip(trips.get(payment.getTrip().getId()));
+                }
+            }
+
+            List<Payment> savedBatch = paymentRepository.saveAll(batch);
+            savedBatch.forEach(payment -> {
+                captainTripStatistics.recordPaymentChanged(captainIdOf(payment), false, isPaid(payment));
+                customerSummaryService.recordPaymentChanged(customerIdOf(payment), 0, paidAmountOf(payment));
+            });
+            saved.addAll(savedBatch);
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return saved;
     }
 
 
@@ -50,6 +124,19 @@ public class PaymentService {
         return paymentRepository.findAll();
     }
 
+    public CursorPage<Payment> getPaymentsPage(Long afterId, int size) {
+        int pageSize = CursorPage.pageSize(size);
+        List<Payment> payments = paymentRepository.findByIdGreaterThanOrderByIdAsc(afterId == null ? 0L : afterId,
+                PageRequest.of(0, pageSize));
+        String nextCursor = payments.size() < pageSize ? null : String.valueOf(payments.get(payments.size() - 1).getId());
+        return new CursorPage<>(payments, nextCursor);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllPayments(Consumer<? super Payment> consumer) {
+        EntityStreams.forEach(paymentRepository.streamAllOrderedById(), entityManager, consumer);
+    }
+
 
 
 
@@ -67,6 +154,8 @@ public class PaymentService {
         if (existingPayment == null) {
             return null;
         }
+        boolean wasPaid = isPaid(existingPayment);
+        double previousPaidAmount = paidAmountOf(existingPayment);
 
         // Update fields
         if(payment.getAmount() != null)
@@ -79,13 +168,62 @@ public class PaymentService {
 
 
 
-        return paymentRepository.save(existingPayment);
+        Payment savedPayment = paymentRepository.save(existingPayment);
+        captainTripStatistics.recordPaymentChanged(captainIdOf(savedPayment), wasPaid, isPaid(savedPayment));
+        customerSummaryService.recordPaymentChanged(customerIdOf(savedPayment), previousPaidAmount,
+                paidAmountOf(savedPayment));
+        return savedPayment;
+    }
+
+
+    // Partial update in a single statement: only the provided fields are written and the
+    // previous status and amount come back through RETURNING, so the payment and its trip
+    // are never loaded. Returns the number of payments updated.
+    @Transactional
+    public int patchPayment(Long id, Payment payment) {
+        if (payment == null) {
+            throw new IllegalArgumentException("A payment is required");
+        }
+
+        PartialUpdate update = new PartialUpdate()
+                .set("amount", payment.getAmount())
+                .set("payment_method", payment.getPaymentMethod())
+                .set("payment_status", payment.getPaymentStatus());
+        if (update.isEmpty()) {
+            throw new IllegalArgumentException("No valid fields to update");
+        }
+
+        List<PaymentChange> changes = jdbcTemplate.query("UPDATE payments p SET " + update.setClause() + " FROM (" +
+                        "SELECT p0.id, p0.amount, p0.payment_status, t.captain_id, t.customer_id FROM payments p0 " +
+                        "LEFT JOIN trips t ON t.id = p0.trip_id WHERE p0.id = ? FOR UPDATE OF p0) old " +
+                        "WHERE p.id = old.id RETURNING old.amount AS old_amount, " +
+                        "old.payment_status AS old_payment_status, old.captain_id, old.customer_id, " +
+                        "p.amount, p.payment_status",
+                (rs, rowNum) -> new PaymentChange(rs.getObject("captain_id", Long.class),
+                        rs.getObject("customer_id", Long.class),
+                        Boolean.TRUE.equals(rs.getObject("old_payment_status", Boolean.class)),
+                        rs.getObject("old_amount", Double.class),
+                        Boolean.TRUE.equals(rs.getObject("payment_status", Boolean.class)),
+                        rs.getObject("amount", Double.class)),
+                update.parameters(id));
+
+        for (PaymentChange change : changes) {
+            captainTripStatistics.recordPaymentChanged(change.captainId(), change.wasPaid(), change.isPaid());
+            customerSummaryService.recordPaymentChanged(change.customerId(),
+                    paidAmountOf(change.wasPaid(), change.previousAmount()), paidAmountOf(change.isPaid(), change.amount()));
+        }
+        return changes.size();
     }
 
 
     @Transactional
     public void deletePayment(Long id) {
+        Payment payment = paymentRepository.findById(id).orElse(null);
         paymentRepository.deleteById(id);
+        if (payment != null) {
+            captainTripStatistics.recordPaymentChanged(captainIdOf(payment), isPaid(payment), false);
+            customerSummaryService.recordPaymentChanged(customerIdOf(payment), paidAmountOf(payment), 0);
+        }
     }
 
     public List<Payment> findByAmountThreshold(Double threshold) {
@@ -95,6 +233,29 @@ public class PaymentService {
         return paymentRepository.findByTripId(tripId);
     }
 
+    private static Long captainIdOf(Payment payment) {
+        Trip trip = payment.getTrip();
+        return trip == null || trip.getCaptain() == null ? null : trip.getCaptain().getId();
+    }
+
+    private static Long customerIdOf(Payment payment) {
+        Trip trip = payment.getTrip();
+        return trip == null || trip.getCustomer() == null ? null : trip.getCustomer().getId();
+    }
+
+    private static boolean isPaid(Payment payment) {
+        return Boolean.TRUE.equals(payment.getPaymentStatus());
+    }
+
+    // What a payment adds to its customer's total paid: its amount while it is paid
+    static double paidAmountOf(Payment payment) {
+        return paidAmountOf(isPaid(payment), payment.getAmount());
+    }
+
+    private static double paidAmountOf(boolean paid, Double amount) {
+        return paid && amount != null ? amount : 0;
+    }
+
 
 
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.Rating;
+import com.example.miniapp.models.RatingStats;
+import com.example.miniapp.models.RatingSummary;
+import com.example.miniapp.repositories.RatingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+
+// Rebuilds the rating summaries maintained by RatingSummaryService from the ratings
+// collection, correcting any drift caused by partial failures. Runs at startup too, so
+// summaries missing for ratings written before they existed are backfilled before any
+// delta-based average reaches Postgres.
+@Service
+public class RatingAggregateReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingAggregateReconciler.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final RatingRepository ratingRepository;
+    private final RatingSummaryService ratingSummaryService;
+    private final CaptainRatingPropagator captainRatingPropagator;
+
+    @Autowired
+    public RatingAggregateReconciler(MongoTemplate mongoTemplate, RatingRepository ratingRepository,
+                                     RatingSummaryService ratingSummaryService,
+                                     CaptainRatingPropagator captainRatingPropagator) {
+        this.mongoTemplate = mongoTemplate;
+        this.ratingRepository = ratingRepository;
+        this.ratingSummaryService = ratingSummaryService;
+        this.captainRatingPropagator = captainRatingPropagator;
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${rating.aggregates.reconcile-cron:0 0 3 * * *}")
+    public void reconcileRatingSummaries() {
+        List<RatingStats> rebuilt = ratingRepository.getAllRatingStats();
+        long decayEpoch = ratingSummaryService.currentDecayEpoch();
+        Map<String, double[]> decayed = computeDecayedSums(decayEpoch);
+
+        Set<String> summaryIds = new HashSet<>();
+        for (RatingStats stats : rebuilt) {
+            String summaryId = RatingSummary.idFor(stats.getEntityType(), stats.getEntityId());
+            summaryIds.add(summaryId);
+
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            stats.getHistogram().forEach((score, count) -> histogram.put(String.valueOf(score), count));
+
+            double[] decayedSums = decayed.getOrDefault(summaryId, new double[2]);
+
+            mongoTemplate.upsert(
+                    Query.query(Criteria.where("_id").is(summaryId)),
+                    new Update().set("entityType", stats.getEntityType())
+                            .set("entityId", stats.getEntityId())
+                            .set("ratingCount", stats.getCount())
+                            .set("ratingSum", stats.getSum())
+                            .set("histogram", histogram)
+                            .set("decayedScoreSum", decayedSums[0])
+                            .set("decayWeight", decayedSums[1])
+                            .set("decayEpoch", decayEpoch),
+                    RatingSummary.class);
+
+            if ("captain".equals(stats.getEntityType())) {
+                captainRatingPropagator.enqueue(stats.getEntityId());
+            }
+        }
+
+        // Drop summaries of entities that no longer have any ratings
+        mongoTemplate.remove(Query.query(Criteria.where("_id").nin(summaryIds)), RatingSummary.class);
+        ratingSummaryService.markReconciled();
+
+        log.debug("Reconciled rating summaries for {} entities", rebuilt.size());
+    }
+
+    // Streams the ratings through a cursor so memory is bounded by the number of
+    // rated entities, not the number of ratings
+    private Map<String, double[]> computeDecayedSums(long decayEpoch) {
+        Map<String, double[]> decayed = new HashMap<>();
+
+        Query query = new Query();
+        query.fields().include("entityId", "entityType", "score", "ratingDate");
+
+        try (Stream<Rating> ratings = mongoTemplate.stream(query, Rating.class)) {
+            ratings.filter(rating -> rating.getEntityId() != null && rating.getEntityType() != null
+                            && rating.getScore() != null)
+                    .forEach(rating -> {
+                        double weight = ratingSummaryService.decayWeight(rating.getRatingDate(), decayEpoch);
+                        double[] sums = decayed.computeIfAbsent(
+                                RatingSummary.idFor(rating.getEntityType(), rating.getEntityId()),
+                                id -> new double[2]);
+                        sums[0] += rating.getScore() * weight;
+                        sums[1] += weight;
+                    });
+        }
+
+        return decayed;
+    }
+}
@@ -1,27 +1,51 @@
 package com.example.miniapp.services;
 
-import com.example.miniapp.models.Captain;
+import com.example.miniapp.models.BulkItemResult;
+import com.example.miniapp.models.BulkResult;
+import com.example.miniapp.models.CursorPage;
+import com.example.miniapp.models.PropagationStatus;
 import com.example.miniapp.models.Rating;
-import com.example.miniapp.repositories.CaptainRepository;
+import com.example.miniapp.models.RatingStats;
 import com.example.miniapp.repositories.RatingRepository;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 
 @Service
 public class RatingService {
 
+    private static final int MAX_BULK_SIZE = 1000;
+
     private final RatingRepository ratingRepository;
-    private final CaptainRepository captainRepository;
+    private final MongoTemplate mongoTemplate;
+    private final RatingSummaryService ratingSummaryService;
+    private final CaptainRatingPropagator captainRatingPropagator;
 
     @Autowired
-    public RatingService(RatingRepository ratingRepository, CaptainRepository captainRepository) {
+    public RatingService(RatingRepository ratingRepository, MongoTemplate mongoTemplate,
+                         RatingSummaryService ratingSummaryService,
+                         CaptainRatingPropagator captainRatingPropagator) {
         this.ratingRepository = ratingRepository;
-        this.captainRepository = captainRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.ratingSummaryService = ratingSummaryService;
+        this.captainRatingPropagator = captainRatingPropagator;
     }
 
 
@@ -31,8 +55,7 @@ public class RatingService {
         }
 
 
-        if (rating.getEntityId() == null || rating.getEntityType() == null || rating.getEntityType().trim().isEmpty() ||
-                rating.getScore() == null || rating.getScore() < 1 || rating.getScore() > 5) {
+        if (!isValidRating(rating)) {
             return null;
         }
 
@@ -44,15 +67,75 @@ public class RatingService {
         // Save the rating
         Rating savedRating = ratingRepository.save(rating);
 
-        // Update captain's average rating if this is a captain rating
-        if ("captain".equalsIgnoreCase(rating.getEntityType())) {
-            updateCaptainAverageRating(rating.getEntityId());
-        }
+        // Update the entity's rating summary (and, for captains, their average rating)
+        ratingSummaryService.recordAdded(savedRating);
 
         return savedRating;
     }
 
 
+    // Inserts the whole batch with one unordered bulk write and folds the ratings of
+    // the batch into a single summary (and captain average) update per entity.
+    public BulkResult addRatings(List<Rating> ratings) {
+        if (ratings == null || ratings.isEmpty()) {
+            throw new IllegalArgumentException("At least one rating is required");
+        }
+        if (ratings.size() > MAX_BULK_SIZE) {
+            throw new IllegalArgumentException("A batch may contain at most " + MAX_BULK_SIZE + " ratings");
+        }
+
+        long started = System.nanoTime();
+        List<BulkItemResult> results = new ArrayList<>();
+        List<Rating> accepted = new ArrayList<>();
+        List<Integer> acceptedPositions = new ArrayList<>();
+
+        for (int i = 0; i < ratings.size(); i++) {
+            Rating rating = ratings.get(i);
+            if (!isValidRating(rating)) {
+                results.add(BulkItemResult.failed(i, "entityId, entityType and a score between 1 and 5 are required"));
+                continue;
+            }
+            if (rating.getRatingDate() == null) {
+                rating.setRatingDate(LocalDateTime.now());
+            }
+            // Assign ids up front so they can be reported back per item
+            rating.setId(new ObjectId().toHexString());
+            accepted.add(rating);
+            acceptedPositions.add(i);
+        }
+
+        Set<Integer> failedInserts = new HashSet<>();
+        if (!accepted.isEmpty()) {
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Rating.class);
+            bulkOperations.insert(accepted);
+            try {
+                bulkOperations.execute();
+            } catch (BulkOperationException e) {
+                for (BulkWriteError error : e.getErrors()) {
+                    failedInserts.add(error.getIndex());
+                    results.add(BulkItemResult.failed(acceptedPositions.get(error.getIndex()), error.getMessage()));
+                }
+            }
+        }
+
+        List<Rating> inserted = new ArrayList<>();
+        for (int i = 0; i < accepted.size(); i++) {
+            if (failedInserts.contains(i)) {
+                continue;
+            }
+            Rating rating = accepted.get(i);
+            results.add(BulkItemResult.succeeded(acceptedPositions.get(i), rating.getId()));
+            inserted.add(rating);
+        }
+
+        ratingSummaryService.recordAdded(inserted);
+
+        BulkResult result = new BulkResult(results);
+        result.recordElapsed(System.nanoTime() - started);
+        return result;
+    }
+
+
     public Rating updateRating(String id, Rating updatedRating) {
         if (updatedRating == null) {
             return null;
@@ -64,6 +147,8 @@ public class RatingService {
             return null; // Rating not found
         }
 
+        Integer previousScore = existingRating.getScore();
+
 
         if (updatedRating.getScore() != null && updatedRating.getScore() >= 1 && updatedRating.getScore() <= 5) {
             existingRating.setScore(updatedRating.getScore());
@@ -76,8 +161,8 @@ public class RatingService {
         Rating savedRating = ratingRepository.save(existingRating);
 
 
-        if ("captain".equalsIgnoreCase(existingRating.getEntityType())) {
-            updateCaptainAverageRating(existingRating.getEntityId());
+        if (previousScore != null) {
+            ratingSummaryService.recordScoreChanged(savedRating, previousScore);
         }
 
         return savedRating;
@@ -92,15 +177,11 @@ public class RatingService {
         }
 
 
-        Long entityId = rating.getEntityId();
-        String entityType = rating.getEntityType();
-
-
         ratingRepository.deleteById(id);
 
-        // Update captain's average rating if this was a captain rating
-        if ("captain".equalsIgnoreCase(entityType)) {
-            updateCaptainAverageRating(entityId);
+        // Update the entity's rating summary (and, for captains, their average rating)
+        if (rating.getScore() != null) {
+            ratingSummaryService.recordRemoved(rating);
         }
     }
 
@@ -122,33 +203,61 @@ public class RatingService {
         return ratingRepository.findAll();
     }
 
+    public CursorPage<Rating> getRatingsPage(String afterId, int size) {
+        int pageSize = CursorPage.pageSize(size);
+        List<Rating> ratings = afterId == null || afterId.isEmpty()
+                ? ratingRepository.findAllByOrderByIdAsc(PageRequest.of(0, pageSize))
+                : ratingRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, pageSize));
+        String nextCursor = ratings.size() < pageSize ? null : ratings.get(ratings.size() - 1).getId();
+        return new CursorPage<>(ratings, nextCursor);
+    }
+
+    // Reads the collection through a single cursor in _id order
+    public void streamAllRatings(Consumer<? super Rating> consumer) {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "id")).cursorBatchSize(CursorPage.MAX_PAGE_SIZE);
+        try (Stream<Rating> ratings = mongoTemplate.stream(query, Rating.class)) {
+            ratings.forEach(consumer);
+        }
+    }
+
 
     public List<Rating> findRatingsByEntityType(String entityType) {
         return ratingRepository.findByEntityType(entityType);
     }
 
-    private void updateCaptainAverageRating(Long captainId) {
-        List<Rating> captainRatings = ratingRepository.findByEntityIdAndEntityType(captainId, "captain");
-
-        if (captainRatings.isEmpty()) {
-            return;
+    public List<RatingStats> getRatingStats(Long entityId, String entityType) {
+        if (entityType == null || entityType.trim().isEmpty()) {
+            throw new IllegalArgumentException("entityType is required");
         }
 
+        if (entityId == null) {
+            return ratingRepository.getRatingStatsByEntityType(entityType);
+        }
 
-        double averageRating = captainRatings.stream()
-                .mapToInt(Rating::getScore)
-                .average()
-                .orElse(0.0);
-
-
-        captainRepository.findById(captainId).ifPresent(captain -> {
-            captain.setAvgRatingScore(averageRating);
-            captainRepository.save(captain);
-        });
+        RatingStats stats = ratingRepository.getRatingStats(entityId, entityType);
+        return stats == null ? List.of() : List.of(stats);
     }
 
+    public List<RatingStats> getRatingSummaries(Long entityId, String entityType) {
+        if (entityType == null || entityType.trim().isEmpty()) {
+            throw new IllegalArgumentException("entityType is required");
+        }
 
+        if (entityId == null) {
+            return ratingSummaryService.getSummariesByEntityType(entityType);
+        }
 
+        RatingStats summary = ratingSummaryService.getSummary(entityType, entityId);
+        return summary == null ? List.of() : List.of(summary);
+    }
 
+    public PropagationStatus getPropagationStatus() {
+        return captainRatingPropagator.getStatus();
+    }
 
+    private boolean isValidRating(Rating rating) {
+        return rating != null && rating.getEntityId() != null && rating.getEntityType() != null
+                && !rating.getEntityType().trim().isEmpty() && rating.getScore() != null
+                && rating.getScore() >= 1 && rating.getScore() <= 5;
+    }
 }
@@ -0,0 +1,280 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.Rating;
+import com.example.miniapp.models.RatingStats;
+import com.example.miniapp.models.RatingSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import com.mongodb.bulk.BulkWriteError;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+// Keeps one rating_summaries document per rated entity up to date with $inc deltas
+// and serves averages/histograms from it without touching the raw ratings.
+//
+// The time-decayed average weights each rating by 2^((ratingDate - decayEpoch) / halfLife).
+// Measuring weights from an epoch rather than from "now" keeps them constant per rating,
+// so they can be $inc-ed and removed exactly; the ratio is the same as with weights
+// decaying from the current time. The epoch moves forward one half-life at a time, which
+// keeps current weights between 1 and 2 however short the half-life is. A summary still
+// weighted against an older epoch has its sums rescaled before the next delta lands.
+//
+// A changed half-life invalidates every stored sum. The reconcile at startup rebuilds
+// them with the new one before any captain average is propagated again.
+@Service
+public class RatingSummaryService {
+
+    private static final int MIN_SCORE = 1;
+    private static final int MAX_SCORE = 5;
+    // Fixed epoch of the summaries written before it started moving
+    private static final long LEGACY_DECAY_EPOCH = LocalDateTime.of(2020, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+    // Bounds the weight of a rating dated in the future
+    private static final double MAX_DECAY_EXPONENT = 64;
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int MAX_APPLY_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final CaptainRatingPropagator captainRatingPropagator;
+    private final double decayRatePerSecond;
+    private final long decayEpochStepSeconds;
+
+    // Until the first reconcile, a summary may only cover the ratings added since it was
+    // created, so captain averages are not propagated from it
+    private volatile boolean reconciled;
+
+    @Autowired
+    public RatingSummaryService(MongoTemplate mongoTemplate, CaptainRatingPropagator captainRatingPropagator,
+                                @Value("${rating.decay.half-life-days:90}") double halfLifeDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.captainRatingPropagator = captainRatingPropagator;
+        if (!(halfLifeDays > 0) || Double.isInfinite(halfLifeDays)) {
+            throw new IllegalArgumentException("rating.decay.half-life-days must be a positive number, got "
+                    + halfLifeDays);
+        }
+        double halfLifeSeconds = halfLifeDays * 24 * 60 * 60;
+        this.decayRatePerSecond = Math.log(2) / halfLifeSeconds;
+        this.decayEpochStepSeconds = Math.max(1L, (long) halfLifeSeconds);
+    }
+
+
+    public void recordAdded(Rating rating) {
+        long decayEpoch = currentDecayEpoch();
+        SummaryDelta delta = new SummaryDelta(rating.getEntityType(), rating.getEntityId(), decayEpoch);
+        delta.add(rating.getScore(), 1, decayWeight(rating.getRatingDate(), decayEpoch));
+        apply(List.of(delta));
+    }
+
+
+    public void recordRemoved(Rating rating) {
+        long decayEpoch = currentDecayEpoch();
+        SummaryDelta delta = new SummaryDelta(rating.getEntityType(), rating.getEntityId(), decayEpoch);
+        delta.add(rating.getScore(), -1, decayWeight(rating.getRatingDate(), decayEpoch));
+        apply(List.of(delta));
+    }
+
+
+    public void recordScoreChanged(Rating rating, int previousScore) {
+        if (rating.getScore() == null || rating.getScore() == previousScore) {
+            return;
+        }
+        long decayEpoch = currentDecayEpoch();
+        SummaryDelta delta = new SummaryDelta(rating.getEntityType(), rating.getEntityId(), decayEpoch);
+        double weight = decayWeight(rating.getRatingDate(), decayEpoch);
+        delta.add(previousScore, -1, weight);
+        delta.add(rating.getScore(), 1, weight);
+        apply(List.of(delta));
+    }
+
+
+    // Folds a batch into one delta per entity and applies them in a single bulk write
+    public void recordAdded(List<Rating> ratings) {
+        long decayEpoch = currentDecayEpoch();
+        Map<String, SummaryDelta> deltas = new LinkedHashMap<>();
+        for (Rating rating : ratings) {
+            deltas.computeIfAbsent(RatingSummary.idFor(rating.getEntityType(), rating.getEntityId()),
+                            id -> new SummaryDelta(rating.getEntityType(), rating.getEntityId(), decayEpoch))
+                    .add(rating.getScore(), 1, decayWeight(rating.getRatingDate(), decayEpoch));
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        apply(deltas.values());
+    }
+
+
+    public RatingStats getSummary(String entityType, Long entityId) {
+        RatingSummary summary = mongoTemplate.findById(RatingSummary.idFor(entityType, entityId), RatingSummary.class);
+        return summary == null ? null : toRatingStats(summary);
+    }
+
+
+    public List<RatingStats> getSummariesByEntityType(String entityType) {
+        return mongoTemplate.find(
+                        Query.query(Criteria.where("entityType").is(RatingSummary.normalizeEntityType(entityType))),
+                        RatingSummary.class)
+                .stream()
+                .map(this::toRatingStats)
+                .toList();
+    }
+
+    public void markReconciled() {
+        reconciled = true;
+    }
+
+    // Start of the current half-life period, the same on every instance
+    public long currentDecayEpoch() {
+        long now = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+        return Math.floorDiv(now, decayEpochStepSeconds) * decayEpochStepSeconds;
+    }
+
+    public double decayWeight(LocalDateTime ratingDate, long decayEpoch) {
+        LocalDateTime date = ratingDate == null ? LocalDateTime.now() : ratingDate;
+        long seconds = date.toEpochSecond(ZoneOffset.UTC) - decayEpoch;
+        return Math.exp(Math.min(decayRatePerSecond * seconds, MAX_DECAY_EXPONENT));
+    }
+
+    // The upserts only match summaries weighted against the deltas' epoch. Any other
+    // summary makes its upsert collide on _id; it is rebased and its delta retried.
+    private void apply(Collection<SummaryDelta> deltas) {
+        List<SummaryDelta> pending = new ArrayList<>(deltas);
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                    RatingSummary.class);
+            pending.forEach(delta -> bulkOperations.upsert(delta.query(), delta.update()));
+            try {
+                bulkOperations.execute();
+                pending = List.of();
+            } catch (BulkOperationException e) {
+                List<SummaryDelta> stale = new ArrayList<>();
+                for (BulkWriteError error : e.getErrors()) {
+                    if (error.getCode() != DUPLICATE_KEY || attempt == MAX_APPLY_ATTEMPTS) {
+                        throw e;
+                    }
+                    stale.add(pending.get(error.getIndex()));
+                }
+                rebase(stale);
+                pending = stale;
+            }
+        }
+        deltas.forEach(this::propagate);
+    }
+
+    // Rescales the sums of the deltas' summaries to the deltas' epoch in one atomic
+    // update per document; summaries already on it are left alone
+    private void rebase(List<SummaryDelta> deltas) {
+        long decayEpoch = deltas.get(0).decayEpoch;
+        List<String> summaryIds = deltas.stream().map(SummaryDelta::summaryId).toList();
+
+        AggregationExpression factor = ArithmeticOperators.Exp.expValueOf(
+                ArithmeticOperators.valueOf(ArithmeticOperators.valueOf(
+                                ConditionalOperators.ifNull("decayEpoch").then(LEGACY_DECAY_EPOCH))
+                        .subtract(decayEpoch)).multiplyBy(decayRatePerSecond));
+        AggregationUpdate update = AggregationUpdate.update()
+                .set("decayedScoreSum").toValue(ArithmeticOperators.valueOf("decayedScoreSum").multiplyBy(factor))
+                .set("decayWeight").toValue(ArithmeticOperators.valueOf("decayWeight").multiplyBy(factor))
+                .set("decayEpoch").toValue(decayEpoch);
+
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("_id").in(summaryIds).and("decayEpoch").ne(decayEpoch)),
+                update, RatingSummary.class);
+    }
+
+    private void propagate(SummaryDelta delta) {
+        if (reconciled && "captain".equals(delta.entityType)) {
+            captainRatingPropagator.enqueue(delta.entityId);
+        }
+    }
+
+    private RatingStats toRatingStats(RatingSummary summary) {
+        Map<Integer, Long> histogram = new LinkedHashMap<>();
+        Integer min = null;
+        Integer max = null;
+        for (int score = MIN_SCORE; score <= MAX_SCORE; score++) {
+            long count = summary.getHistogram() == null ? 0L
+                    : summary.getHistogram().getOrDefault(String.valueOf(score), 0L);
+            histogram.put(score, count);
+            if (count > 0) {
+                min = min == null ? score : min;
+                max = score;
+            }
+        }
+
+        RatingStats stats = new RatingStats(summary.getEntityId(), summary.getEntityType(), summary.getRatingCount(),
+                summary.getRatingSum(), summary.getRatingCount() > 0 ? summary.getAverage() : null,
+                min, max, histogram);
+        stats.setDecayedAverage(summary.getRatingCount() > 0 ? summary.getDecayedAverage() : null);
+        return stats;
+    }
+
+
+    private static class SummaryDelta {
+
+        private final String entityType;
+        private final Long entityId;
+        private final long decayEpoch;
+        private long count;
+        private long sum;
+        private double decayedScoreSum;
+        private double decayWeight;
+        private final long[] histogram = new long[MAX_SCORE + 1];
+
+        SummaryDelta(String entityType, Long entityId, long decayEpoch) {
+            this.entityType = RatingSummary.normalizeEntityType(entityType);
+            this.entityId = entityId;
+            this.decayEpoch = decayEpoch;
+        }
+
+        void add(int score, int direction, double weight) {
+            count += direction;
+            sum += (long) score * direction;
+            decayedScoreSum += score * direction * weight;
+            decayWeight += direction * weight;
+            if (score >= MIN_SCORE && score <= MAX_SCORE) {
+                histogram[score] += direction;
+            }
+        }
+
+        String summaryId() {
+            return RatingSummary.idFor(entityType, entityId);
+        }
+
+        Query query() {
+            return Query.query(Criteria.where("_id").is(summaryId()).and("decayEpoch").is(decayEpoch));
+        }
+
+        Update update() {
+            Update update = new Update()
+                    .setOnInsert("entityType", entityType)
+                    .setOnInsert("entityId", entityId)
+                    .setOnInsert("decayEpoch", decayEpoch)
+                    .inc("ratingCount", count)
+                    .inc("ratingSum", sum)
+                    .inc("decayedScoreSum", decayedScoreSum)
+                    .inc("decayWeight", decayWeight);
+            for (int score = MIN_SCORE; score <= MAX_SCORE; score++) {
+                if (histogram[score] != 0) {
+                    update.inc("histogram." + score, histogram[score]);
+                }
+            }
+            return update;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.CacheStatistics;
+import com.example.miniapp.models.Captain;
+import com.example.miniapp.models.Customer;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+
+// Keeps Hibernate's second-level cache (see SecondLevelCacheConfig) consistent with the
+// writes that go around Hibernate through JdbcTemplate, and reports region statistics.
+// Evictions inside a transaction run after it completes, so a concurrent reader cannot
+// put the old row back between the eviction and the commit.
+@Service
+public class SecondLevelCache {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ObjectProvider<CacheManager> secondLevelCacheManager;
+
+    @Autowired
+    public SecondLevelCache(EntityManagerFactory entityManagerFactory,
+                            ObjectProvider<CacheManager> secondLevelCacheManager) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.secondLevelCacheManager = secondLevelCacheManager;
+    }
+
+
+    public void evictCaptains(Collection<Long> captainIds) {
+        afterCompletion(() -> captainIds.forEach(id -> entityManagerFactory.getCache().evict(Captain.class, id)));
+    }
+
+
+    public void evictCustomers(Collection<Long> customerIds) {
+        afterCompletion(() -> customerIds.forEach(id -> entityManagerFactory.getCache().evict(Customer.class, id)));
+    }
+
+
+    // JDBC writes do not bump Hibernate's table timestamps, so cached results of queries
+    // whose matches they change have to be dropped explicitly
+    public void evictQueryResults() {
+        afterCompletion(() -> entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegions());
+    }
+
+
+    // Statistics of the named regions; empty when the second-level cache is disabled
+    public List<CacheStatistics> getStatistics(String... regions) {
+        List<CacheStatistics> statistics = new ArrayList<>();
+        CacheManager cacheManager = secondLevelCacheManager.getIfAvailable();
+        if (cacheManager == null) {
+            return statistics;
+        }
+        for (String region : regions) {
+            Cache<Object, Object> cache = cacheManager.getCache(region);
+            if (cache == null) {
+                continue;
+            }
+            com.github.benmanes.caffeine.cache.Cache<?, ?> caffeine =
+                    cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class);
+            CacheStats stats = caffeine.stats();
+            statistics.add(new CacheStatistics("second-level:" + region, caffeine.estimatedSize(), stats.hitCount(),
+                    stats.missCount(), stats.evictionCount(), stats.hitRate()));
+        }
+        return statistics;
+    }
+
+    private static void afterCompletion(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                eviction.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.repositories.CaptainRepository;
+import com.example.miniapp.repositories.CustomerRepository;
+import com.example.miniapp.repositories.PaymentRepository;
+import com.example.miniapp.repositories.TripRepository;
+import com.example.miniapp.utils.SqlCapture;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+// Captures the SQL that the filtering repository methods actually generate, by calling
+// them with sample arguments inside a transaction that is rolled back, and warns about
+// every sequential scan that SQL makes of a table holding more than min-table-rows rows.
+//
+// Each statement is planned the way a prepared statement's generic plan would be, with
+// sequential scans disabled. Neither the sample values nor the table contents then sway
+// the planner, and a sequential scan, or a full index scan with no index condition, left
+// in the plan means it had no index to use.
+@Service
+public class SequentialScanReporter {
+
+    private static final Logger log = LoggerFactory.getLogger(SequentialScanReporter.class);
+
+    private final Map<String, Runnable> sampleInvocations = new LinkedHashMap<>();
+    private final AtomicInteger preparedStatements = new AtomicInteger();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final long minTableRows;
+
+    @Autowired
+    public SequentialScanReporter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  ObjectMapper objectMapper, TripRepository tripRepository,
+                                  PaymentRepository paymentRepository, CustomerRepository customerRepository,
+                                  CaptainRepository captainRepository,
+                                  @Value("${query-plan-check.enabled:true}") boolean enabled,
+                                  @Value("${query-plan-check.min-table-rows:10000}") long minTableRows) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.minTableRows = minTableRows;
+
+        // Arguments that match nothing, so no rows are loaded
+        LocalDateTime never = LocalDateTime.of(1970, 1, 1, 0, 0);
+        sampleInvocations.put("TripRepository.findByTripDateBetween",
+                () -> tripRepository.findByTripDateBetween(never, never));
+        sampleInvocations.put("TripRepository.findByCaptainId", () -> tripRepository.findByCaptainId(-1L));
+        sampleInvocations.put("TripRepository.findByCustomerId", () -> tripRepository.findByCustomerId(-1L));
+        sampleInvocations.put("PaymentRepository.findByTripId", () -> paymentRepository.findByTripId(-1L));
+        sampleInvocations.put("PaymentRepository.findByAmountGreaterThan",
+                () -> paymentRepository.findByAmountGreaterThan(Double.MAX_VALUE));
+        sampleInvocations.put("CustomerRepository.findByEmail", () -> customerRepository.findByEmail(""));
+        sampleInvocations.put("CustomerRepository.findByEmailDomain",
+                () -> customerRepository.findByEmailDomain("", Long.MAX_VALUE, 1));
+        sampleInvocations.put("CustomerRepository.findByPhoneNumber", () -> customerRepository.findByPhoneNumber(""));
+        sampleInvocations.put("CustomerRepository.findByPhoneNumberPrefix",
+                () -> customerRepository.findByPhoneNumberPrefix("0", "0", 1));
+        sampleInvocations.put("CaptainRepository.findByLicenseNumber",
+                () -> captainRepository.findByLicenseNumber(""));
+        sampleInvocations.put("CaptainRepository.findByAvgRatingScoreGreaterThan",
+                () -> captainRepository.findByAvgRatingScoreGreaterThan(Double.MAX_VALUE));
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reportSequentialScans() {
+        if (!enabled) {
+            return;
+        }
+
+        int reported = 0;
+        for (Map.Entry<String, Runnable> sample : sampleInvocations.entrySet()) {
+            try {
+                Integer found = transactionTemplate.execute(status -> {
+                    status.setRollbackOnly();
+                    return reportSequentialScans(sample.getKey(), SqlCapture.capture(sample.getValue()));
+                });
+                reported += found == null ? 0 : found;
+            } catch (RuntimeException e) {
+                log.warn("Could not check the query plan of {}", sample.getKey(), e);
+            }
+        }
+
+        log.debug("Query plan check finished, {} sequential scans on large tables", reported);
+    }
+
+    private int reportSequentialScans(String method, List<String> statements) {
+        if (statements.isEmpty()) {
+            log.warn("{} sent no SQL to check", method);
+            return 0;
+        }
+        int reported = 0;
+        for (String sql : statements) {
+            for (String table : findSequentialScans(sql)) {
+                long rows = estimatedRows(table);
+                if (rows >= minTableRows) {
+                    reported++;
+                    log.warn("{} runs a sequential scan on {} (~{} rows): {}", method, table, rows, sql);
+                }
+            }
+        }
+        return reported;
+    }
+
+    // Tables read by a "Seq Scan" node, or by an index scan without an index condition,
+    // anywhere in the generic plan of the statement
+    private List<String> findSequentialScans(String sql) {
+        int parameters = 0;
+        StringBuilder numbered = new StringBuilder(sql.length());
+        // None of the checked statements has a '?' inside a literal
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                numbered.append('$').append(++parameters);
+            } else {
+                numbered.append(c);
+            }
+        }
+
+        String name = "sequential_scan_check_" + preparedStatements.incrementAndGet();
+        jdbcTemplate.execute("SET LOCAL plan_cache_mode = force_generic_plan");
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+        jdbcTemplate.execute("PREPARE " + name + " AS " + numbered);
+        String plan;
+        try {
+            String arguments = parameters == 0 ? ""
+                    : "(" + String.join(", ", Collections.nCopies(parameters, "NULL")) + ")";
+            plan = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) EXECUTE " + name + arguments, String.class);
+        } finally {
+            jdbcTemplate.execute("DEALLOCATE " + name);
+        }
+
+        List<String> tables = new ArrayList<>();
+        try {
+            for (JsonNode root : objectMapper.readTree(plan)) {
+                collectSequentialScans(root.path("Plan"), tables);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable query plan: " + plan, e);
+        }
+        return tables;
+    }
+
+    private void collectSequentialScans(JsonNode node, List<String> tables) {
+        String nodeType = node.path("Node Type").asText();
+        boolean fullIndexScan = ("Index Scan".equals(nodeType) || "Index Only Scan".equals(nodeType))
+                && node.path("Index Cond").isMissingNode();
+        if ("Seq Scan".equals(nodeType) || fullIndexScan) {
+            tables.add(node.path("Relation Name").asText());
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSequentialScans(child, tables);
+        }
+    }
+
+    private long estimatedRows(String table) {
+        Long rows = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(n_live_tup), 0) FROM pg_stat_user_tables WHERE relname = ?", Long.class, table);
+        return rows == null ? 0L : rows;
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.TripSummary;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+// Append-only local archive of trips (with their captain, customer and payment) that
+// were moved out of Postgres by TripArchiver.
+//
+// Every archiving run writes one immutable segment: trips-<n>.seg holds gzip-compressed
+// blocks of up to BLOCK_SIZE NDJSON TripSummary rows sorted by trip date, and
+// trips-<n>.idx lists each block's offset, length, id range and date range. The index
+// is written last, so a segment without one is an interrupted run and is ignored.
+// Once TripArchiver has deleted a segment's trips from Postgres it writes trips-<n>.done;
+// until then the segment's rows may still be in the trips table as well.
+// All block indexes are kept in memory; a lookup only decompresses the blocks whose
+// id or date range can contain a match.
+@Service
+public class TripArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(TripArchive.class);
+
+    private static final int BLOCK_SIZE = 1000;
+
+    private record Block(long offset, int length, int count, long minId, long maxId,
+                         LocalDateTime minTripDate, LocalDateTime maxTripDate) {
+    }
+
+    private record SegmentIndex(List<Block> blocks) {
+    }
+
+    private record Segment(Path file, List<Block> blocks) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final Path directory;
+    private final boolean enabled;
+
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    // Segments whose trips are known to be gone from Postgres
+    private final Set<Path> deletedSegments = ConcurrentHashMap.newKeySet();
+    private volatile LocalDateTime newestArchivedTripDate;
+    // Highest segment number in use; numbers are milliseconds since the epoch unless two
+    // segments are appended within the same one
+    private long lastSegmentNumber;
+
+    @Autowired
+    public TripArchive(ObjectMapper objectMapper, JdbcTemplate jdbcTemplate,
+                       @Value("${trip.archive.directory:data/trip-archive}") String directory,
+                       @Value("${trip.archive.enabled:false}") boolean enabled) {
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.directory = Path.of(directory);
+        this.enabled = enabled;
+    }
+
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    // Runs before any bean that uses the archive is ready, so the rebuilds on
+    // ApplicationReadyEvent already see every archived trip
+    @PostConstruct
+    public void loadIndexes() {
+        if (!enabled || !Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> listing = Files.list(directory)) {
+            List<Path> files = listing.sorted().toList();
+            files.forEach(file -> lastSegmentNumber = Math.max(lastSegmentNumber, segmentNumberOf(file)));
+            for (Path index : files.stream().filter(file -> file.toString().endsWith(".idx")).toList()) {
+                Path segment = index.resolveSibling(index.getFileName().toString().replace(".idx", ".seg"));
+                if (Files.exists(doneMarkerOf(segment))) {
+                    deletedSegments.add(segment);
+                }
+                addSegment(new Segment(segment, objectMapper.readValue(index.toFile(), SegmentIndex.class).blocks()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the trip archive in " + directory, e);
+        }
+        log.debug("Trip archive loaded with {} segments", segments.size());
+    }
+
+
+    // Writes the trips as a new segment and returns it once both files are on disk
+    public synchronized Path append(List<TripSummary> trips) {
+        if (!enabled || trips.isEmpty()) {
+            return null;
+        }
+
+        List<TripSummary> sorted = new ArrayList<>(trips);
+        sorted.sort(Comparator.comparing(TripSummary::getTripDate).thenComparing(TripSummary::getId));
+
+        try {
+            Files.createDirectories(directory);
+            lastSegmentNumber = Math.max(System.currentTimeMillis(), lastSegmentNumber + 1);
+            String name = String.format("trips-%020d", lastSegmentNumber);
+            Path segment = directory.resolve(name + ".seg");
+            Path index = directory.resolve(name + ".idx");
+
+            List<Block> blocks = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                long offset = 0;
+                for (int from = 0; from < sorted.size(); from += BLOCK_SIZE) {
+                    List<TripSummary> rows = sorted.subList(from, Math.min(from + BLOCK_SIZE, sorted.size()));
+                    byte[] compressed = compress(rows);
+                    ByteBuffer buffer = ByteBuffer.wrap(compressed);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    blocks.add(new Block(offset, compressed.length, rows.size(),
+                            rows.stream().mapToLong(TripSummary::getId).min().orElse(0),
+                            rows.stream().mapToLong(TripSummary::getId).max().orElse(0),
+                            rows.get(0).getTripDate(), rows.get(rows.size() - 1).getTripDate()));
+                    offset += compressed.length;
+                }
+                channel.force(true);
+            }
+
+            Path temporaryIndex = directory.resolve(name + ".idx.tmp");
+            Files.write(temporaryIndex, objectMapper.writeValueAsBytes(new SegmentIndex(blocks)));
+            Files.move(temporaryIndex, index, StandardCopyOption.ATOMIC_MOVE);
+
+            addSegment(new Segment(segment, blocks));
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write to the trip archive in " + directory, e);
+        }
+    }
+
+
+    // Records that the segment's trips have been deleted from Postgres
+    public void markDeleted(Path segment) {
+        try {
+            Files.write(doneMarkerOf(segment), new byte[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write to the trip archive in " + directory, e);
+        }
+        deletedSegments.add(segment);
+    }
+
+
+    // Segments appended by runs that stopped before their delete was recorded, oldest first
+    public List<Path> getUndeletedSegments() {
+        return segments.stream()
+                .map(Segment::file)
+                .filter(segment -> !deletedSegments.contains(segment))
+                .toList();
+    }
+
+
+    public List<Long> getIds(Path segment) {
+        List<Long> ids = new ArrayList<>();
+        for (Segment candidate : segments) {
+            if (candidate.file().equals(segment)) {
+                candidate.blocks().forEach(block -> read(candidate, block).forEach(trip -> ids.add(trip.getId())));
+            }
+        }
+        return ids;
+    }
+
+
+    public TripSummary findById(Long id) {
+        if (!enabled || id == null) {
+            return null;
+        }
+        for (Segment segment : segments) {
+            for (Block block : segment.blocks()) {
+                if (id < block.minId() || id > block.maxId()) {
+                    continue;
+                }
+                for (TripSummary trip : read(segment, block)) {
+                    if (id.equals(trip.getId())) {
+                        return trip;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+
+    public List<TripSummary> findByTripDateBetween(LocalDateTime startDate, LocalDateTime endDate) {
+        List<TripSummary> result = new ArrayList<>();
+        if (!enabled || !overlapsArchive(startDate)) {
+            return result;
+        }
+        for (Segment segment : segments) {
+            for (Block block : segment.blocks()) {
+                if (block.maxTripDate().isBefore(startDate) || block.minTripDate().isAfter(endDate)) {
+                    continue;
+                }
+                for (TripSummary trip : read(segment, block)) {
+                    if (!trip.getTripDate().isBefore(startDate) && !trip.getTripDate().isAfter(endDate)) {
+                        result.add(trip);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+
+    // Every archived trip once, skipping rows that are still in the trips table. Only
+    // segments whose delete was not recorded can hold such rows, or rows archived again
+    // by a later run, so only their ids are checked and remembered.
+    public void forEachArchived(Consumer<TripSummary> consumer) {
+        if (!enabled) {
+            return;
+        }
+        Set<Long> undeletedIds = new HashSet<>();
+        for (Segment segment : segments) {
+            if (deletedSegments.contains(segment.file())) {
+                continue;
+            }
+            for (Block block : segment.blocks()) {
+                List<TripSummary> rows = read(segment, block);
+                Set<Long> inTrips = idsInTrips(rows);
+                for (TripSummary trip : rows) {
+                    if (!inTrips.contains(trip.getId()) && undeletedIds.add(trip.getId())) {
+                        consumer.accept(trip);
+                    }
+                }
+            }
+        }
+        // TripArchiver finishes undeleted segments before appending, so recorded segments never overlap
+        for (Segment segment : segments) {
+            if (!deletedSegments.contains(segment.file())) {
+                continue;
+            }
+            for (Block block : segment.blocks()) {
+                for (TripSummary trip : read(segment, block)) {
+                    if (!undeletedIds.contains(trip.getId())) {
+                        consumer.accept(trip);
+                    }
+                }
+            }
+        }
+    }
+
+
+    // Everything archived is older than the newest archived trip, so later ranges skip the archive
+    public boolean overlapsArchive(LocalDateTime startDate) {
+        LocalDateTime newest = newestArchivedTripDate;
+        return enabled && newest != null && startDate != null && !startDate.isAfter(newest);
+    }
+
+    private void addSegment(Segment segment) {
+        segments.add(segment);
+        for (Block block : segment.blocks()) {
+            if (newestArchivedTripDate == null || block.maxTripDate().isAfter(newestArchivedTripDate)) {
+                newestArchivedTripDate = block.maxTripDate();
+            }
+        }
+    }
+
+    private Set<Long> idsInTrips(List<TripSummary> rows) {
+        Set<Long> ids = new HashSet<>();
+        if (rows.isEmpty()) {
+            return ids;
+        }
+        jdbcTemplate.query("SELECT id FROM trips WHERE id IN (" + String.join(", ", Collections.nCopies(rows.size(), "?")) +
+                ")", rs -> {
+            ids.add(rs.getLong("id"));
+        }, rows.stream().map(TripSummary::getId).toArray());
+        return ids;
+    }
+
+    // 0 for files that are not part of a segment
+    private static long segmentNumberOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith("trips-") || name.indexOf('.') < 0) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(name.substring("trips-".length(), name.indexOf('.')));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Path doneMarkerOf(Path segment) {
+        return segment.resolveSibling(segment.getFileName().toString().replace(".seg", ".done"));
+    }
+
+    private byte[] compress(List<TripSummary> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            for (TripSummary row : rows) {
+                gzip.write(objectMapper.writeValueAsBytes(row));
+                gzip.write('\n');
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<TripSummary> read(Segment segment, Block block) {
+        try (FileChannel channel = FileChannel.open(segment.file(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(block.length());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, block.offset() + buffer.position()) < 0) {
+                    throw new EOFException("Truncated block at offset " + block.offset());
+                }
+            }
+            List<TripSummary> rows = new ArrayList<>(block.count());
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new ByteArrayInputStream(buffer.array())), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    rows.add(objectMapper.readValue(line, TripSummary.class));
+                }
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read trip archive segment " + segment.file(), e);
+        }
+    }
+}
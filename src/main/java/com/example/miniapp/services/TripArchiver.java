@@ -0,0 +1,96 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.TripSummary;
+import com.example.miniapp.repositories.TripRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+
+// Moves trips older than the configured horizon, with their payments, from Postgres
+// into the TripArchive. Each batch is written to the archive first and only then
+// deleted, so a crash in between leaves the rows in both places rather than in neither.
+// The archive records every finished delete; a run first repeats the delete of any
+// segment without one, so the same trip is never archived twice.
+@Service
+public class TripArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(TripArchiver.class);
+
+    private final TripRepository tripRepository;
+    private final TripArchive tripArchive;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int horizonDays;
+    private final int batchSize;
+
+    @Autowired
+    public TripArchiver(TripRepository tripRepository, TripArchive tripArchive, JdbcTemplate jdbcTemplate,
+                        TransactionTemplate transactionTemplate,
+                        @Value("${trip.archive.horizon-days:730}") int horizonDays,
+                        @Value("${trip.archive.batch-size:5000}") int batchSize) {
+        this.tripRepository = tripRepository;
+        this.tripArchive = tripArchive;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.horizonDays = horizonDays;
+        this.batchSize = batchSize;
+    }
+
+
+    @Scheduled(cron = "${trip.archive.cron:0 30 3 * * *}")
+    public void archiveOldTrips() {
+        if (!tripArchive.isEnabled()) {
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(horizonDays);
+        long archived = 0;
+        try {
+            for (Path segment : tripArchive.getUndeletedSegments()) {
+                List<Long> ids = tripArchive.getIds(segment);
+                for (int from = 0; from < ids.size(); from += batchSize) {
+                    delete(ids.subList(from, Math.min(from + batchSize, ids.size())));
+                }
+                tripArchive.markDeleted(segment);
+                log.info("Finished the interrupted archiving of trip archive segment {}", segment);
+            }
+
+            List<TripSummary> batch;
+            do {
+                batch = tripRepository.findSummariesByTripDateBefore(cutoff, PageRequest.of(0, batchSize));
+                if (!batch.isEmpty()) {
+                    Path segment = tripArchive.append(batch);
+                    delete(batch.stream().map(TripSummary::getId).toList());
+                    tripArchive.markDeleted(segment);
+                    archived += batch.size();
+                }
+            } while (batch.size() == batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Trip archiving stopped after {} trips", archived, e);
+        }
+
+        log.debug("Archived {} trips dated before {}", archived, cutoff);
+    }
+
+    // Idempotent, so it can be repeated for a segment whose delete was not recorded
+    private void delete(List<Long> tripIds) {
+        String placeholders = String.join(", ", Collections.nCopies(tripIds.size(), "?"));
+        Object[] ids = tripIds.toArray();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM payments WHERE trip_id IN (" + placeholders + ")", ids);
+            jdbcTemplate.update("DELETE FROM trips WHERE id IN (" + placeholders + ")", ids);
+        });
+    }
+}
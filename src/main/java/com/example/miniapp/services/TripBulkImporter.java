@@ -0,0 +1,382 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.BulkItemResult;
+import com.example.miniapp.models.BulkResult;
+import com.example.miniapp.models.Captain;
+import com.example.miniapp.models.Customer;
+import com.example.miniapp.models.Trip;
+import com.example.miniapp.repositories.CaptainRepository;
+import com.example.miniapp.repositories.CustomerRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+
+// Imports trip files (JSON array, NDJSON or CSV) of any size. Records are read in
+// windows of parse-parallelism chunks; the chunks of a window are parsed in parallel,
+// then each chunk resolves its captains and customers with one IN query per table
+// and is saved in its own transaction through TripService.addTrips. A bad row or a
+// failed chunk is reported and the import carries on. A file that becomes unreadable
+// part way, such as a JSON syntax error, keeps what was read before that point and
+// reports the rest as one failed item at the position where reading stopped.
+//
+// CSV files need a header naming the columns tripDate, origin, destination, tripCost,
+// captainId and customerId (any order, missing columns are null). Quoted fields may
+// contain commas but not line breaks.
+@Service
+public class TripBulkImporter {
+
+    public enum Format {
+        JSON, NDJSON, CSV
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(TripBulkImporter.class);
+
+    private final TripService tripService;
+    private final CaptainRepository captainRepository;
+    private final CustomerRepository customerRepository;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int parseParallelism;
+
+    @Autowired
+    public TripBulkImporter(TripService tripService, CaptainRepository captainRepository,
+                            CustomerRepository customerRepository, ObjectMapper objectMapper,
+                            @Value("${trip.bulk.chunk-size:1000}") int chunkSize,
+                            @Value("${trip.bulk.parse-parallelism:0}") int parseParallelism) {
+        this.tripService = tripService;
+        this.captainRepository = captainRepository;
+        this.customerRepository = customerRepository;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.parseParallelism = parseParallelism > 0 ? parseParallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+
+    public BulkResult importTrips(InputStream input, Format format) {
+        if (input == null || format == null) {
+            throw new IllegalArgumentException("A trip file and its format are required");
+        }
+
+        long started = System.nanoTime();
+        Import progress = new Import();
+        try {
+            switch (format) {
+                case JSON -> readJsonArray(input, progress);
+                case NDJSON -> readLines(input, false, progress);
+                case CSV -> readLines(input, true, progress);
+            }
+            progress.finishWindow();
+        } catch (IOException | IllegalArgumentException e) {
+            // Nothing has been saved yet, so the whole file can simply be rejected
+            if (progress.received == 0) {
+                throw new IllegalArgumentException("Unreadable trip file: " + e.getMessage(), e);
+            }
+            progress.stopReading("Unreadable trip file from here on: " + e.getMessage());
+        }
+
+        BulkResult result = new BulkResult(progress.received, progress.failures);
+        result.recordElapsed(System.nanoTime() - started);
+        log.debug("Imported {} of {} trips in {} ms", result.getSucceeded(), result.getReceived(),
+                result.getElapsedMillis());
+        return result;
+    }
+
+    private void readJsonArray(InputStream input, Import progress) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of trips");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == null) {
+                    throw new IllegalArgumentException("Unterminated JSON array");
+                }
+                // Only split the array here; binding the elements to trips happens in the parallel step
+                progress.add(objectMapper.readTree(parser));
+            }
+        }
+    }
+
+    private void readLines(InputStream input, boolean csv, Import progress) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            if (csv) {
+                String header = reader.readLine();
+                if (header == null) {
+                    return;
+                }
+                progress.csvColumns = csvColumns(header);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    progress.add(line);
+                }
+            }
+        }
+    }
+
+
+    // Records of one chunk with their position in the file
+    private record Chunk(int firstIndex, List<Object> records) {
+    }
+
+    private record ParsedChunk(Chunk chunk, Trip[] trips, List<BulkItemResult> failures) {
+    }
+
+
+    private class Import {
+
+        private final List<Chunk> window = new ArrayList<>();
+        private final List<BulkItemResult> failures = new ArrayList<>();
+        private List<Object> current = new ArrayList<>();
+        private Map<String, Integer> csvColumns;
+        private int received;
+
+        void add(Object record) {
+            current.add(record);
+            received++;
+            if (current.size() >= chunkSize) {
+                window.add(new Chunk(received - current.size(), current));
+                current = new ArrayList<>();
+                if (window.size() >= parseParallelism) {
+                    flushWindow();
+                }
+            }
+        }
+
+        // Saves what was read and reports the unread rest as a single failed item
+        void stopReading(String error) {
+            finishWindow();
+            failures.add(BulkItemResult.failed(received, error));
+            received++;
+        }
+
+        void finishWindow() {
+            if (!current.isEmpty()) {
+                window.add(new Chunk(received - current.size(), current));
+                current = new ArrayList<>();
+            }
+            flushWindow();
+        }
+
+        private void flushWindow() {
+            List<ParsedChunk> parsed = window.parallelStream()
+                    .map(chunk -> parse(chunk, csvColumns))
+                    .toList();
+            window.clear();
+            for (ParsedChunk chunk : parsed) {
+                failures.addAll(chunk.failures());
+                failures.addAll(persist(chunk));
+            }
+        }
+    }
+
+
+    private ParsedChunk parse(Chunk chunk, Map<String, Integer> csvColumns) {
+        Trip[] trips = new Trip[chunk.records().size()];
+        List<BulkItemResult> failures = new ArrayList<>();
+        for (int i = 0; i < trips.length; i++) {
+            Object record = chunk.records().get(i);
+            try {
+                Trip trip;
+                if (csvColumns != null) {
+                    trip = fromCsv((String) record, csvColumns);
+                } else if (record instanceof String line) {
+                    trip = objectMapper.readValue(line, Trip.class);
+                } else {
+                    trip = objectMapper.treeToValue((JsonNode) record, Trip.class);
+                }
+                String error = validate(trip);
+                if (error == null) {
+                    trips[i] = trip;
+                } else {
+                    failures.add(BulkItemResult.failed(chunk.firstIndex() + i, error));
+                }
+            } catch (Exception e) {
+                failures.add(BulkItemResult.failed(chunk.firstIndex() + i, "Unparseable trip: " + e.getMessage()));
+            }
+        }
+        return new ParsedChunk(chunk, trips, failures);
+    }
+
+    private List<BulkItemResult> persist(ParsedChunk parsed) {
+        Trip[] trips = parsed.trips();
+        int firstIndex = parsed.chunk().firstIndex();
+
+        Map<Long, Captain> captains = findAll(trips, Trip::getCaptain, Captain::getId, captainRepository::findAllById);
+        Map<Long, Customer> customers = findAll(trips, Trip::getCustomer, Customer::getId,
+                customerRepository::findAllById);
+
+        List<BulkItemResult> failures = new ArrayList<>();
+        List<Trip> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        for (int i = 0; i < trips.length; i++) {
+            Trip trip = trips[i];
+            if (trip == null) {
+                continue;
+            }
+            if (trip.getCaptain() != null) {
+                Captain captain = captains.get(trip.getCaptain().getId());
+                if (captain == null) {
+                    failures.add(BulkItemResult.failed(firstIndex + i,
+                            "Captain " + trip.getCaptain().getId() + " not found"));
+                    continue;
+                }
+                trip.setCaptain(captain);
+            }
+            if (trip.getCustomer() != null) {
+                Customer customer = customers.get(trip.getCustomer().getId());
+                if (customer == null) {
+                    failures.add(BulkItemResult.failed(firstIndex + i,
+                            "Customer " + trip.getCustomer().getId() + " not found"));
+                    continue;
+                }
+                trip.setCustomer(customer);
+            }
+            accepted.add(trip);
+            acceptedIndexes.add(firstIndex + i);
+        }
+
+        if (!accepted.isEmpty()) {
+            try {
+                tripService.addTrips(accepted);
+            } catch (RuntimeException e) {
+                log.warn("Failed to save trips {}..{}", acceptedIndexes.get(0),
+                        acceptedIndexes.get(acceptedIndexes.size() - 1), e);
+                for (Integer index : acceptedIndexes) {
+                    failures.add(BulkItemResult.failed(index, "Chunk rolled back: " + e.getMessage()));
+                }
+            }
+        }
+        return failures;
+    }
+
+    // One IN query for the distinct ids referenced by the chunk
+    private <T> Map<Long, T> findAll(Trip[] trips, Function<Trip, T> reference, Function<T, Long> id,
+                                     Function<List<Long>, List<T>> loader) {
+        List<Long> ids = new ArrayList<>();
+        for (Trip trip : trips) {
+            if (trip != null && reference.apply(trip) != null) {
+                ids.add(id.apply(reference.apply(trip)));
+            }
+        }
+        ids = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return loader.apply(ids).stream().collect(Collectors.toMap(id, Function.identity()));
+    }
+
+    private String validate(Trip trip) {
+        if (trip == null) {
+            return "Empty trip";
+        }
+        if (trip.getTripDate() == null) {
+            return "tripDate is required";
+        }
+        if (trip.getOrigin() == null || trip.getOrigin().isBlank()
+                || trip.getDestination() == null || trip.getDestination().isBlank()) {
+            return "origin and destination are required";
+        }
+        if (trip.getTripCost() == null || trip.getTripCost() < 0) {
+            return "tripCost must be zero or more";
+        }
+        if (trip.getCaptain() != null && trip.getCaptain().getId() == null) {
+            return "captain must have an id";
+        }
+        if (trip.getCustomer() != null && trip.getCustomer().getId() == null) {
+            return "customer must have an id";
+        }
+        trip.setId(null);
+        trip.setPayment(null);
+        return null;
+    }
+
+    private Map<String, Integer> csvColumns(String header) {
+        List<String> names = splitCsv(header);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim(), i);
+        }
+        return columns;
+    }
+
+    private Trip fromCsv(String line, Map<String, Integer> columns) {
+        List<String> values = splitCsv(line);
+        Trip trip = new Trip();
+        String tripDate = column(values, columns, "tripDate");
+        trip.setTripDate(tripDate == null ? null : LocalDateTime.parse(tripDate));
+        trip.setOrigin(column(values, columns, "origin"));
+        trip.setDestination(column(values, columns, "destination"));
+        String tripCost = column(values, columns, "tripCost");
+        trip.setTripCost(tripCost == null ? null : Double.valueOf(tripCost));
+        String captainId = column(values, columns, "captainId");
+        if (captainId != null) {
+            trip.setCaptain(new Captain(Long.valueOf(captainId), null, null, null));
+        }
+        String customerId = column(values, columns, "customerId");
+        if (customerId != null) {
+            trip.setCustomer(new Customer(Long.valueOf(customerId), null, null, null));
+        }
+        return trip;
+    }
+
+    private String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer position = columns.get(name);
+        if (position == null || position >= values.size()) {
+            return null;
+        }
+        String value = values.get(position).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // Splits one CSV line; a quoted value may contain commas and doubled quotes
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+}
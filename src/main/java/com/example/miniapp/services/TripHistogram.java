@@ -0,0 +1,219 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.TripVolumeBucket;
+import com.example.miniapp.utils.AfterCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+// Hourly trip count and cost sum, kept in memory and adjusted once each trip write in
+// TripService commits, so volume queries never load trips. Built from the trips table and the
+// trip archive at startup and rebuilt nightly to correct any drift. Only hours that
+// have trips are stored. A rebuild reads one snapshot of the trips table; writes that
+// commit after it are applied to both the current and the rebuilt counters, so none are
+// lost when the rebuilt ones replace them and none are counted twice.
+@Service
+public class TripHistogram {
+
+    public enum Bucket {
+        HOUR, DAY, MONTH
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(TripHistogram.class);
+
+    private static final class HourCounter {
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder cost = new DoubleAdder();
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final TripArchive tripArchive;
+    private final boolean enabled;
+
+    // Hours since the epoch -> counters of the trips dated in that hour
+    private volatile ConcurrentSkipListMap<Long, HourCounter> hours = new ConcurrentSkipListMap<>();
+    // Counters of the running rebuild, null when none is running
+    private ConcurrentSkipListMap<Long, HourCounter> rebuilding;
+    // Writers hold the read lock from before their commit until their counters are updated
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    @Autowired
+    public TripHistogram(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                         TripArchive tripArchive, @Value("${trip.histogram.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setReadOnly(true);
+        this.tripArchive = tripArchive;
+        this.enabled = enabled;
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${trip.histogram.rebuild-cron:0 15 4 * * *}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+
+        ConcurrentSkipListMap<Long, HourCounter> rebuilt = new ConcurrentSkipListMap<>();
+        try {
+            snapshotTransaction.executeWithoutResult(status -> {
+                // The snapshot starts with the first statement, taken while no write is
+                // between its commit and its counter update
+                swapLock.writeLock().lock();
+                try {
+                    jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+                    rebuilding = rebuilt;
+                } finally {
+                    swapLock.writeLock().unlock();
+                }
+                load(rebuilt);
+            });
+        } catch (RuntimeException e) {
+            swap(hours, null);
+            throw e;
+        }
+        swap(rebuilt, null);
+        ready = true;
+        log.debug("Trip histogram rebuilt with {} hours", rebuilt.size());
+    }
+
+
+    public void recordAdded(LocalDateTime tripDate, Double tripCost) {
+        record(tripDate, tripCost, 1);
+    }
+
+
+    public void recordRemoved(LocalDateTime tripDate, Double tripCost) {
+        record(tripDate, tripCost, -1);
+    }
+
+
+    // Buckets overlapping [start, end) that contain trips, oldest first. Hours are the
+    // unit of storage, so the range is widened to whole hours.
+    public List<TripVolumeBucket> getHistogram(LocalDateTime start, LocalDateTime end, Bucket bucket) {
+        if (start == null || end == null || bucket == null || end.isBefore(start)) {
+            throw new IllegalArgumentException("start must not be after end");
+        }
+        long firstHour = hourOf(start);
+        long endHour = hourStart(hourOf(end)).isBefore(end) ? hourOf(end) + 1 : hourOf(end);
+        if (!enabled || !ready) {
+            return queryHistogram(hourStart(firstHour), hourStart(endHour), bucket);
+        }
+
+        NavigableMap<Long, HourCounter> range = hours.subMap(firstHour, true, endHour, false);
+        List<TripVolumeBucket> result = new ArrayList<>();
+        TripVolumeBucket current = null;
+        for (var entry : range.entrySet()) {
+            long count = entry.getValue().count.sum();
+            if (count <= 0) {
+                continue;
+            }
+            LocalDateTime bucketStart = truncate(hourStart(entry.getKey()), bucket);
+            if (current == null || !current.getStart().equals(bucketStart)) {
+                current = new TripVolumeBucket(bucketStart, 0, 0);
+                result.add(current);
+            }
+            current.setTripCount(current.getTripCount() + count);
+            current.setTotalCost(current.getTotalCost() + entry.getValue().cost.sum());
+        }
+        return result;
+    }
+
+    private void load(ConcurrentSkipListMap<Long, HourCounter> rebuilt) {
+        jdbcTemplate.query("SELECT date_trunc('hour', trip_date) AS hour, COUNT(*) AS trips, " +
+                "SUM(trip_cost) AS cost FROM trips GROUP BY 1", rs -> {
+            HourCounter counter = rebuilt.computeIfAbsent(hourOf(rs.getTimestamp("hour").toLocalDateTime()),
+                    hour -> new HourCounter());
+            counter.count.add(rs.getLong("trips"));
+            counter.cost.add(rs.getDouble("cost"));
+        });
+        tripArchive.forEachArchived(trip -> add(rebuilt, trip.getTripDate(), trip.getTripCost(), 1));
+    }
+
+    private void swap(ConcurrentSkipListMap<Long, HourCounter> current,
+                      ConcurrentSkipListMap<Long, HourCounter> next) {
+        swapLock.writeLock().lock();
+        try {
+            hours = current;
+            rebuilding = next;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private void record(LocalDateTime tripDate, Double tripCost, int direction) {
+        if (!enabled) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            add(hours, tripDate, tripCost, direction);
+            if (rebuilding != null) {
+                add(rebuilding, tripDate, tripCost, direction);
+            }
+        }, swapLock.readLock());
+    }
+
+    // Used until the in-memory histogram is loaded, or when it is disabled
+    private List<TripVolumeBucket> queryHistogram(LocalDateTime start, LocalDateTime end, Bucket bucket) {
+        String unit = bucket.name().toLowerCase(Locale.ROOT);
+        return jdbcTemplate.query("SELECT date_trunc('" + unit + "', trip_date) AS bucket, COUNT(*) AS trips, " +
+                        "SUM(trip_cost) AS cost FROM trips WHERE trip_date >= ? AND trip_date < ? GROUP BY 1 ORDER BY 1",
+                (rs, rowNum) -> new TripVolumeBucket(rs.getTimestamp("bucket").toLocalDateTime(), rs.getLong("trips"),
+                        rs.getDouble("cost")),
+                Timestamp.valueOf(start), Timestamp.valueOf(end));
+    }
+
+    private static void add(ConcurrentSkipListMap<Long, HourCounter> target, LocalDateTime tripDate, Double tripCost,
+                            int direction) {
+        if (tripDate == null) {
+            return;
+        }
+        HourCounter counter = target.computeIfAbsent(hourOf(tripDate), hour -> new HourCounter());
+        counter.count.add(direction);
+        counter.cost.add(direction * (tripCost == null ? 0 : tripCost));
+    }
+
+    private static long hourOf(LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 3600);
+    }
+
+    private static LocalDateTime hourStart(long hour) {
+        return LocalDateTime.ofEpochSecond(hour * 3600, 0, ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime truncate(LocalDateTime hourStart, Bucket bucket) {
+        return switch (bucket) {
+            case HOUR -> hourStart;
+            case DAY -> hourStart.truncatedTo(ChronoUnit.DAYS);
+            case MONTH -> hourStart.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.TripPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+// Maintains the monthly partitions of trips once the table has been converted with
+// db/partitioning/trips_monthly_partitions.sql. Partitions are named trips_pYYYY_MM and
+// cover one calendar month of trip_date, so date range queries only touch the months
+// they overlap. Does nothing while trips is a plain table.
+@Service
+public class TripPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(TripPartitionManager.class);
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("trips_p(\\d{4})_(\\d{2})");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final String coldTablespace;
+
+    @Autowired
+    public TripPartitionManager(JdbcTemplate jdbcTemplate,
+                                @Value("${trip.partitioning.enabled:false}") boolean enabled,
+                                @Value("${trip.partitioning.months-ahead:3}") int monthsAhead,
+                                @Value("${trip.partitioning.cold-tablespace:}") String coldTablespace) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+        this.coldTablespace = coldTablespace;
+    }
+
+
+    public boolean isPartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid " +
+                        "WHERE c.relname = 'trips' AND pg_table_is_visible(c.oid))", Boolean.class);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+
+    // Keeps the current month and the next months-ahead months ready for inserts
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${trip.partitioning.cron:0 0 2 * * *}")
+    public void createFuturePartitions() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!isPartitioned()) {
+                log.warn("trip.partitioning.enabled is set but trips is not partitioned; " +
+                        "run db/partitioning/trips_monthly_partitions.sql first");
+                return;
+            }
+            YearMonth current = YearMonth.now();
+            for (int i = 0; i <= monthsAhead; i++) {
+                createPartition(current.plusMonths(i));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to create upcoming trip partitions", e);
+        }
+    }
+
+
+    public void createPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF trips " +
+                "FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+
+    public List<TripPartition> getPartitions() {
+        if (!isPartitioned()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(
+                "SELECT c.relname, c.reltuples::bigint AS estimated_rows FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'trips'::regclass " +
+                        "ORDER BY c.relname",
+                (rs, rowNum) -> {
+                    String name = rs.getString("relname");
+                    YearMonth month = monthOf(name);
+                    return new TripPartition(name, month == null ? null : month.atDay(1),
+                            month == null ? null : month.plusMonths(1).atDay(1), rs.getLong("estimated_rows"));
+                });
+    }
+
+
+    // Detaches every partition that ends on or before the given date. DETACH ... CONCURRENTLY
+    // only takes a SHARE UPDATE EXCLUSIVE lock on trips, so reads and writes carry on while it
+    // waits for running queries. The detached tables keep their data and can be archived or
+    // dropped on their own; with cold-tablespace set they are moved there.
+    public List<TripPartition> detachPartitionsBefore(LocalDate before) {
+        if (before == null) {
+            throw new IllegalArgumentException("A cut-off date is required");
+        }
+
+        List<TripPartition> detached = new ArrayList<>();
+        for (TripPartition partition : getPartitions()) {
+            if (partition.getRangeEnd() == null || partition.getRangeEnd().isAfter(before)) {
+                continue;
+            }
+            // Must not run inside a transaction, so it goes straight through the autocommit connection
+            jdbcTemplate.execute("ALTER TABLE trips DETACH PARTITION " + partition.getName() + " CONCURRENTLY");
+            if (!coldTablespace.isEmpty()) {
+                jdbcTemplate.execute("ALTER TABLE " + partition.getName() + " SET TABLESPACE " + coldTablespace);
+            }
+            detached.add(partition);
+            log.info("Detached trip partition {}", partition.getName());
+        }
+        return detached;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return String.format("trips_p%04d_%02d", month.getYear(), month.getMonthValue());
+    }
+
+    private static YearMonth monthOf(String partitionName) {
+        Matcher matcher = PARTITION_NAME.matcher(partitionName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+}
@@ -1,23 +1,64 @@
 package com.example.miniapp.services;
 
+import com.example.miniapp.models.Captain;
+import com.example.miniapp.models.CursorPage;
+import com.example.miniapp.models.Customer;
+import com.example.miniapp.models.Payment;
 import com.example.miniapp.models.Trip;
+import com.example.miniapp.models.TripSummary;
 import com.example.miniapp.repositories.TripRepository;
+import com.example.miniapp.utils.EntityStreams;
+import com.example.miniapp.utils.PartialUpdate;
+import jakarta.persistence.EntityManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 
 @Service
 public class TripService {
 
     private final TripRepository tripRepository;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final TripArchive tripArchive;
+    private final TripHistogram tripHistogram;
+    private final CaptainTripStatistics captainTripStatistics;
+    private final CustomerSummaryService customerSummaryService;
+    private final int batchSize;
 
     @Autowired
-    public TripService(TripRepository tripRepository) {
+    public TripService(TripRepository tripRepository, EntityManager entityManager, JdbcTemplate jdbcTemplate,
+                       TripArchive tripArchive,
+                       TripHistogram tripHistogram, CaptainTripStatistics captainTripStatistics,
+                       CustomerSummaryService customerSummaryService,
+                       @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
         this.tripRepository = tripRepository;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tripArchive = tripArchive;
+        this.tripHistogram = tripHistogram;
+        this.captainTripStatistics = captainTripStatistics;
+        this.customerSummaryService = customerSummaryService;
+        this.batchSize = batchSize;
     }
 
 
@@ -29,17 +70,60 @@ public class TripService {
 
 
 
-        return tripRepository.save(trip);
+        Trip savedTrip = tripRepository.save(trip);
+        recordAdded(savedTrip);
+        customerSummaryService.recordTripAdded(savedTrip);
+        return savedTrip;
     }
 
 
-    public List<Trip> getAllTrips() {
-        return tripRepository.findAll();
+    // Saves the trips in JDBC batches, flushing and clearing the persistence context
+    // after every batch so memory stays flat for large inputs
+    @Transactional
+    public List<Trip> addTrips(List<Trip> trips) {
+        if (trips == null || trips.isEmpty()) {
+            throw new IllegalArgumentException("At least one trip is required");
+        }
+
+        List<Trip> saved = new ArrayList<>(trips.size());
+        for (int from = 0; from < trips.size(); from += batchSize) {
+            saved.addAll(tripRepository.saveAll(trips.subList(from, Math.min(from + batchSize, trips.size()))));
+            entityManager.flush();
+            entityManager.clear();
+        }
+        saved.forEach(this::recordAdded);
+        customerSummaryService.recordTripsAdded(saved);
+        return saved;
     }
 
 
+    public List<TripSummary> getAllTrips() {
+        return tripRepository.findAllSummaries();
+    }
+
+
+    public CursorPage<Trip> getTripsPage(Long afterId, int size) {
+        int pageSize = CursorPage.pageSize(size);
+        List<Trip> trips = tripRepository.findByIdGreaterThanOrderByIdAsc(afterId == null ? 0L : afterId,
+                PageRequest.of(0, pageSize));
+        String nextCursor = trips.size() < pageSize ? null : String.valueOf(trips.get(trips.size() - 1).getId());
+        return new CursorPage<>(trips, nextCursor);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllTrips(Consumer<? super Trip> consumer) {
+        EntityStreams.forEach(tripRepository.streamAllOrderedById(), entityManager, consumer);
+    }
+
+
+    // Falls back to the archive for trips that have been moved out of the database
     public Trip getTripById(Long id) {
-        return tripRepository.findById(id).orElse(null);
+        Trip trip = tripRepository.findById(id).orElse(null);
+        if (trip == null) {
+            TripSummary archived = tripArchive.findById(id);
+            return archived == null ? null : fromArchive(archived);
+        }
+        return trip;
     }
 
 
@@ -52,8 +136,13 @@ public class TripService {
 
         Trip existingTrip = tripRepository.findById(id).orElse(null);
         if (existingTrip == null) {
+            rejectIfArchived(id);
             return null;
         }
+        Trip previousTrip = new Trip(id, existingTrip.getTripDate(), existingTrip.getOrigin(),
+                existingTrip.getDestination(), existingTrip.getTripCost());
+        previousTrip.setCaptain(existingTrip.getCaptain());
+        previousTrip.setCustomer(existingTrip.getCustomer());
 
 
         if (trip.getTripDate() != null) {
@@ -75,24 +164,222 @@ public class TripService {
             existingTrip.setCustomer(trip.getCustomer());
         }
 
-        return tripRepository.save(existingTrip);
+        Trip savedTrip = tripRepository.saveAndFlush(existingTrip);
+        recordReplaced(previousTrip, savedTrip);
+        return savedTrip;
+    }
+
+
+    // Partial update in a single statement: only the provided fields are written, with
+    // the same rules as updateTrip, and the previous values come back through RETURNING
+    // so the trip is never loaded. Returns the number of trips updated.
+    @Transactional
+    public int patchTrip(Long id, Trip trip) {
+        if (trip == null) {
+            throw new IllegalArgumentException("A trip is required");
+        }
+
+        PartialUpdate update = new PartialUpdate()
+                .set("trip_date", trip.getTripDate() == null ? null : Timestamp.valueOf(trip.getTripDate()))
+                .set("origin", trip.getOrigin() == null || trip.getOrigin().trim().isEmpty() ? null : trip.getOrigin())
+                .set("destination", trip.getDestination() == null || trip.getDestination().trim().isEmpty()
+                        ? null : trip.getDestination())
+                .set("trip_cost", trip.getTripCost() == null || trip.getTripCost() < 0 ? null : trip.getTripCost())
+                .set("captain_id", captainIdOf(trip))
+                .set("customer_id", customerIdOf(trip));
+        if (update.isEmpty()) {
+            throw new IllegalArgumentException("No valid fields to update");
+        }
+
+        List<Trip[]> changes;
+        try {
+            changes = jdbcTemplate.query("UPDATE trips t SET " + update.setClause() + " FROM (" +
+                            "SELECT t0.*, p.id AS payment_id, p.amount, p.payment_status FROM trips t0 " +
+                            "LEFT JOIN payments p ON p.trip_id = t0.id WHERE t0.id = ? FOR UPDATE OF t0) old " +
+                            "WHERE t.id = old.id RETURNING old.id, old.payment_id, old.amount, old.payment_status, " +
+                            "old.trip_date AS old_trip_date, old.origin AS old_origin, " +
+                            "old.destination AS old_destination, old.trip_cost AS old_trip_cost, " +
+                            "old.captain_id AS old_captain_id, old.customer_id AS old_customer_id, " +
+                            "t.trip_date AS new_trip_date, t.origin AS new_origin, t.destination AS new_destination, " +
+                            "t.trip_cost AS new_trip_cost, t.captain_id AS new_captain_id, " +
+                            "t.customer_id AS new_customer_id",
+                    (rs, rowNum) -> new Trip[]{tripOf(rs, "old_"), tripOf(rs, "new_")},
+                    update.parameters(id));
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException("Unknown captain or customer", e);
+        }
+
+        if (changes.isEmpty()) {
+            rejectIfArchived(id);
+        }
+        changes.forEach(change -> recordReplaced(change[0], change[1]));
+        return changes.size();
     }
 
 
     @Transactional
     public void deleteTrip(Long id) {
-        if (tripRepository.existsById(id)) {
-            tripRepository.deleteById(id);
+        Trip trip = tripRepository.findById(id).orElse(null);
+        if (trip != null) {
+            tripRepository.delete(trip);
+            tripRepository.flush();
+            recordRemoved(captainIdOf(trip), trip.getTripDate(), trip.getTripCost(), isPaid(trip));
+            customerSummaryService.recordTripRemoved(customerIdOf(trip), trip.getTripDate(), trip.getTripCost(),
+                    paidAmountOf(trip), trip.getOrigin(), trip.getDestination());
+        } else {
+            rejectIfArchived(id);
+        }
+    }
+
+
+    // Set-based removal of the trips of the given customers, with their payments, in two
+    // statements instead of the row-by-row JPA cascade. Returns the number of trips deleted.
+    @Transactional
+    public int deleteTripsByCustomerIds(Collection<Long> customerIds) {
+        return deleteTripsWhere("customer_id", customerIds);
+    }
+
+
+    @Transactional
+    public int deleteTripsByCaptainIds(Collection<Long> captainIds) {
+        return deleteTripsWhere("captain_id", captainIds);
+    }
+
+
+    // Only reads the archive when the range reaches back into the archived period
+    public List<TripSummary> findTripsWithinDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        List<TripSummary> trips = tripRepository.findSummariesByTripDateBetween(startDate, endDate);
+        if (!tripArchive.overlapsArchive(startDate)) {
+            return trips;
+        }
+
+        Map<Long, TripSummary> merged = new LinkedHashMap<>();
+        trips.forEach(trip -> merged.put(trip.getId(), trip));
+        tripArchive.findByTripDateBetween(startDate, endDate).forEach(trip -> merged.putIfAbsent(trip.getId(), trip));
+        List<TripSummary> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparing(TripSummary::getId));
+        return result;
+    }
+
+
+    public List<TripSummary> findTripsByCaptainId(Long captainId) {
+        return tripRepository.findSummariesByCaptainId(captainId);
+    }
+
+    // The deleted rows come back through RETURNING, so nothing is loaded beforehand
+    private int deleteTripsWhere(String column, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Object[] parameters = ids.toArray();
+
+        Map<Long, Payment> payments = new HashMap<>();
+        jdbcTemplate.query("DELETE FROM payments p USING trips t WHERE p.trip_id = t.id AND t." + column +
+                " IN (" + placeholders + ") RETURNING p.id, p.trip_id, p.amount, p.payment_status", rs -> {
+            payments.put(rs.getLong("trip_id"), new Payment(rs.getLong("id"), rs.getObject("amount", Double.class),
+                    null, rs.getObject("payment_status", Boolean.class)));
+        }, parameters);
+        List<TripSummary> removed = jdbcTemplate.query("DELETE FROM trips WHERE " + column + " IN (" + placeholders +
+                        ") RETURNING id, trip_date, origin, destination, trip_cost, captain_id, customer_id",
+                (rs, rowNum) -> {
+                    Payment payment = payments.get(rs.getLong("id"));
+                    return new TripSummary(rs.getLong("id"), rs.getTimestamp("trip_date").toLocalDateTime(),
+                            rs.getString("origin"), rs.getString("destination"),
+                            rs.getObject("trip_cost", Double.class), rs.getObject("captain_id", Long.class), null,
+                            rs.getObject("customer_id", Long.class), null,
+                            payment == null ? null : payment.getId(), payment == null ? null : payment.getAmount(),
+                            null, payment == null ? null : payment.getPaymentStatus());
+                },
+                parameters);
+
+        removed.forEach(trip -> tripHistogram.recordRemoved(trip.getTripDate(), trip.getTripCost()));
+        captainTripStatistics.recordTripsRemoved(removed);
+        customerSummaryService.recordTripsRemoved(removed);
+        return removed.size();
+    }
+
+    // A new trip has no payment yet; payments are linked to it through PaymentService
+    private void recordAdded(Trip trip) {
+        tripHistogram.recordAdded(trip.getTripDate(), trip.getTripCost());
+        captainTripStatistics.recordTripAdded(captainIdOf(trip), trip.getTripDate(), trip.getTripCost(), false);
+    }
+
+    private void recordRemoved(Long captainId, LocalDateTime tripDate, Double tripCost, boolean paid) {
+        tripHistogram.recordRemoved(tripDate, tripCost);
+        captainTripStatistics.recordTripRemoved(captainId, tripDate, tripCost, paid);
+    }
+
+    // Must run after the update has been flushed; the payment is taken from the current trip
+    private void recordReplaced(Trip previous, Trip current) {
+        boolean paid = isPaid(current);
+        recordRemoved(captainIdOf(previous), previous.getTripDate(), previous.getTripCost(), paid);
+        customerSummaryService.recordTripRemoved(customerIdOf(previous), previous.getTripDate(),
+                previous.getTripCost(), paidAmountOf(current), previous.getOrigin(), previous.getDestination());
+        tripHistogram.recordAdded(current.getTripDate(), current.getTripCost());
+        captainTripStatistics.recordTripAdded(captainIdOf(current), current.getTripDate(), current.getTripCost(),
+                paid);
+        customerSummaryService.recordTripAdded(current);
+    }
+
+    // Reads one side of a patchTrip RETURNING row; only ids are set on the references
+    private static Trip tripOf(ResultSet rs, String prefix) throws SQLException {
+        Timestamp tripDate = rs.getTimestamp(prefix + "trip_date");
+        Trip trip = new Trip(rs.getLong("id"), tripDate == null ? null : tripDate.toLocalDateTime(),
+                rs.getString(prefix + "origin"), rs.getString(prefix + "destination"),
+                rs.getObject(prefix + "trip_cost", Double.class));
+        Long captainId = rs.getObject(prefix + "captain_id", Long.class);
+        Long customerId = rs.getObject(prefix + "customer_id", Long.class);
+        Long paymentId = rs.getObject("payment_id", Long.class);
+        if (captainId != null) {
+            trip.setCaptain(new Captain(captainId, null, null, null));
         }
+        if (customerId != null) {
+            trip.setCustomer(new Customer(customerId, null, null, null));
+        }
+        if (paymentId != null) {
+            trip.setPayment(new Payment(paymentId, rs.getObject("amount", Double.class), null,
+                    rs.getObject("payment_status", Boolean.class)));
+        }
+        return trip;
     }
 
+    private static Long captainIdOf(Trip trip) {
+        return trip.getCaptain() == null ? null : trip.getCaptain().getId();
+    }
 
-    public List<Trip> findTripsWithinDateRange(LocalDateTime startDate, LocalDateTime endDate) {
-        return tripRepository.findByTripDateBetween(startDate, endDate);
+    private static Long customerIdOf(Trip trip) {
+        return trip.getCustomer() == null ? null : trip.getCustomer().getId();
     }
 
+    private static boolean isPaid(Trip trip) {
+        return trip.getPayment() != null && Boolean.TRUE.equals(trip.getPayment().getPaymentStatus());
+    }
 
-    public List<Trip> findTripsByCaptainId(Long captainId) {
-        return tripRepository.findByCaptainId(captainId);
+    private static double paidAmountOf(Trip trip) {
+        return trip.getPayment() == null ? 0 : PaymentService.paidAmountOf(trip.getPayment());
+    }
+
+    // Archive segments are immutable, so trips that only exist there are read-only
+    private void rejectIfArchived(Long id) {
+        if (tripArchive.findById(id) != null) {
+            throw new IllegalArgumentException("Trip " + id + " is archived and cannot be changed");
+        }
+    }
+
+    private Trip fromArchive(TripSummary archived) {
+        Trip trip = new Trip(archived.getId(), archived.getTripDate(), archived.getOrigin(), archived.getDestination(),
+                archived.getTripCost());
+        if (archived.getCaptainId() != null) {
+            trip.setCaptain(new Captain(archived.getCaptainId(), archived.getCaptainName(), null, null));
+        }
+        if (archived.getCustomerId() != null) {
+            trip.setCustomer(new Customer(archived.getCustomerId(), archived.getCustomerName(), null, null));
+        }
+        if (archived.getPaymentId() != null) {
+            trip.setPayment(new Payment(archived.getPaymentId(), archived.getPaymentAmount(),
+                    archived.getPaymentMethod(), archived.getPaymentStatus()));
+        }
+        return trip;
     }
 }
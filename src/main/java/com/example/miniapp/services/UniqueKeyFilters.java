@@ -0,0 +1,166 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.KeyFilterStatistics;
+import com.example.miniapp.repositories.CaptainRepository;
+import com.example.miniapp.repositories.CustomerRepository;
+import com.example.miniapp.utils.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+
+// Bloom filters over captains.license_number and customers.email. A key the filter
+// has never seen is definitely unused, so onboarding can skip the existence query;
+// only possible hits are confirmed against the database.
+@Service
+public class UniqueKeyFilters {
+
+    private static final Logger log = LoggerFactory.getLogger(UniqueKeyFilters.class);
+
+    private static final int SCAN_FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CaptainRepository captainRepository;
+    private final CustomerRepository customerRepository;
+    private final long minExpectedKeys;
+    private final double falsePositiveRate;
+
+    private volatile KeyFilter captainLicenses;
+    private volatile KeyFilter customerEmails;
+
+    @Autowired
+    public UniqueKeyFilters(JdbcTemplate jdbcTemplate, CaptainRepository captainRepository,
+                            CustomerRepository customerRepository,
+                            @Value("${unique-key-filter.min-expected-keys:100000}") long minExpectedKeys,
+                            @Value("${unique-key-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.captainRepository = captainRepository;
+        this.customerRepository = customerRepository;
+        this.minExpectedKeys = minExpectedKeys;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+
+    // Streams both key columns into freshly sized filters. Keys recorded while the
+    // scan runs go into the new filter as well, but it is only consulted once loaded.
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warm() {
+        captainLicenses = newFilter("captains.license_number", "captains");
+        scan(captainLicenses, "captains", "license_number");
+
+        customerEmails = newFilter("customers.email", "customers");
+        scan(customerEmails, "customers", "email");
+    }
+
+
+    public boolean isLicenseNumberTaken(String licenseNumber) {
+        return isTaken(captainLicenses, licenseNumber, captainRepository::existsByLicenseNumber);
+    }
+
+
+    public void recordLicenseNumber(String licenseNumber) {
+        record(captainLicenses, licenseNumber);
+    }
+
+
+    public boolean isEmailTaken(String email) {
+        return isTaken(customerEmails, email, customerRepository::existsByEmail);
+    }
+
+
+    public void recordEmail(String email) {
+        record(customerEmails, email);
+    }
+
+
+    public KeyFilterStatistics getLicenseNumberStatistics() {
+        KeyFilter filter = captainLicenses;
+        return filter == null ? null : filter.toStatistics();
+    }
+
+
+    public KeyFilterStatistics getEmailStatistics() {
+        KeyFilter filter = customerEmails;
+        return filter == null ? null : filter.toStatistics();
+    }
+
+    // Leaves room for the table to double before the false-positive rate degrades
+    private KeyFilter newFilter(String name, String table) {
+        Long rows = jdbcTemplate.queryForObject("SELECT count(*) FROM " + table, Long.class);
+        long expectedKeys = Math.max(minExpectedKeys, 2 * (rows == null ? 0 : rows));
+        return new KeyFilter(name, BloomFilter.create(expectedKeys, falsePositiveRate));
+    }
+
+    private void scan(KeyFilter filter, String table, String column) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT " + column + " FROM " + table);
+            statement.setFetchSize(SCAN_FETCH_SIZE);
+            return statement;
+        }, rs -> {
+            String key = rs.getString(1);
+            if (key != null) {
+                filter.bloomFilter.put(key);
+            }
+        });
+
+        filter.loaded = true;
+        log.debug("Loaded {} keys into the {} filter ({} bytes)", filter.bloomFilter.getInsertions(), filter.name,
+                filter.bloomFilter.getMemoryBytes());
+    }
+
+    private static boolean isTaken(KeyFilter filter, String key, Predicate<String> existsQuery) {
+        if (key == null) {
+            return false;
+        }
+        if (filter == null || !filter.loaded) {
+            return existsQuery.test(key);
+        }
+        if (!filter.bloomFilter.mightContain(key)) {
+            filter.skippedQueries.incrementAndGet();
+            return false;
+        }
+        boolean exists = existsQuery.test(key);
+        (exists ? filter.duplicatesFound : filter.falsePositives).incrementAndGet();
+        return exists;
+    }
+
+    private static void record(KeyFilter filter, String key) {
+        if (filter != null && key != null) {
+            filter.bloomFilter.put(key);
+        }
+    }
+
+
+    private static class KeyFilter {
+
+        private final String name;
+        private final BloomFilter bloomFilter;
+        private final AtomicLong skippedQueries = new AtomicLong();
+        private final AtomicLong falsePositives = new AtomicLong();
+        private final AtomicLong duplicatesFound = new AtomicLong();
+        private volatile boolean loaded;
+
+        KeyFilter(String name, BloomFilter bloomFilter) {
+            this.name = name;
+            this.bloomFilter = bloomFilter;
+        }
+
+        KeyFilterStatistics toStatistics() {
+            return new KeyFilterStatistics(name, bloomFilter.getInsertions(), bloomFilter.getExpectedInsertions(),
+                    bloomFilter.getBitCount(), bloomFilter.getHashFunctions(), bloomFilter.getMemoryBytes(),
+                    bloomFilter.expectedFalsePositiveRate(), skippedQueries.get(), falsePositives.get(),
+                    duplicatesFound.get());
+        }
+    }
+}
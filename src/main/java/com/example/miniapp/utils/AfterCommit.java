@@ -0,0 +1,82 @@
+package com.example.miniapp.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.locks.Lock;
+
+
+public final class AfterCommit {
+
+    private static final Logger log = LoggerFactory.getLogger(AfterCommit.class);
+
+    private AfterCommit() {
+    }
+
+
+    // Runs the work once the current transaction has committed, and not at all if it
+    // rolls back; outside a transaction it runs right away. For side effects of Postgres
+    // writes that a rollback cannot undo, such as in-memory counters or Mongo documents.
+    // The transaction has already committed when the work fails, so the failure is
+    // logged rather than thrown; the nightly rebuilds correct what it missed.
+    public static void run(Runnable work) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            work.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    work.run();
+                } catch (RuntimeException e) {
+                    log.warn("Failed to apply a change after commit", e);
+                }
+            }
+        });
+    }
+
+
+    // Same as run(work), holding the lock from just before the commit until the work is
+    // done. Whoever takes the lock's exclusive side finds no transaction between its
+    // commit and its work, so a database snapshot taken then either contains a write and
+    // the work already ran, or lacks it and the work is still to come.
+    public static void run(Runnable work, Lock lock) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lock.lock();
+            try {
+                work.run();
+            } finally {
+                lock.unlock();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean locked;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                lock.lock();
+                locked = true;
+            }
+
+            @Override
+            public void afterCommit() {
+                try {
+                    work.run();
+                } catch (RuntimeException e) {
+                    log.warn("Failed to apply a change after commit", e);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (locked) {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.miniapp.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+// Thread-safe Bloom filter over strings. mightContain never returns false for a key
+// that was put, so a false answer proves the key was never added.
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashFunctions;
+    private final long expectedInsertions;
+    private final AtomicLong insertions = new AtomicLong();
+
+
+    private BloomFilter(long bitCount, int hashFunctions, long expectedInsertions) {
+        this.bitCount = bitCount;
+        this.hashFunctions = hashFunctions;
+        this.expectedInsertions = expectedInsertions;
+        this.words = new AtomicLongArray((int) ((bitCount + 63) / 64));
+    }
+
+
+    // Sizes the filter so that it stays at the requested false-positive rate
+    // until expectedInsertions keys have been added
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bits = Math.max(64, Math.min(bits, (long) Integer.MAX_VALUE * 64));
+        int hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+        return new BloomFilter(bits, hashes, n);
+    }
+
+
+    public void put(String key) {
+        long hash1 = hash(key, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(key, 0xC2B2AE3D27D4EB4FL);
+        for (int i = 0; i < hashFunctions; i++) {
+            setBit(index(hash1 + i * hash2));
+        }
+        insertions.incrementAndGet();
+    }
+
+
+    public boolean mightContain(String key) {
+        long hash1 = hash(key, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(key, 0xC2B2AE3D27D4EB4FL);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = index(hash1 + i * hash2);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    // (1 - e^(-k * n / m))^k for the number of keys added so far
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashFunctions * insertions.get() / bitCount), hashFunctions);
+    }
+
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public long getInsertions() {
+        return insertions.get();
+    }
+
+    public long getMemoryBytes() {
+        return words.length() * 8L;
+    }
+
+    private long index(long combinedHash) {
+        return Math.floorMod(combinedHash, bitCount);
+    }
+
+    private void setBit(long bit) {
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!words.compareAndSet(word, current, current | mask));
+    }
+
+    // FNV-1a over the UTF-8 bytes followed by a murmur3 finalizer, seeded per hash function
+    private static long hash(String key, long seed) {
+        long hash = 0xCBF29CE484222325L ^ seed;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.miniapp.utils;
+
+import jakarta.persistence.EntityManager;
+
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+
+public final class EntityStreams {
+
+    // Rows handed out between persistence context clears; matches the JDBC fetch size
+    public static final int CLEAR_INTERVAL = 500;
+
+    private EntityStreams() {
+    }
+
+
+    // Feeds every entity of a repository stream to the consumer, clearing the
+    // persistence context periodically so memory does not grow with the row count.
+    // Must run inside a transaction.
+    public static <T> void forEach(Stream<T> stream, EntityManager entityManager, Consumer<? super T> consumer) {
+        try (stream) {
+            int count = 0;
+            for (T entity : (Iterable<T>) stream::iterator) {
+                consumer.accept(entity);
+                if (++count % CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.miniapp.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+
+// Writes each accepted object as one line of newline-delimited JSON
+public class NdjsonWriter implements Consumer<Object> {
+
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private static final int FLUSH_INTERVAL = 500;
+
+    private final ObjectMapper objectMapper;
+    private final OutputStream outputStream;
+    private int written;
+
+    public NdjsonWriter(ObjectMapper objectMapper, OutputStream outputStream) {
+        this.objectMapper = objectMapper;
+        this.outputStream = outputStream;
+    }
+
+
+    @Override
+    public void accept(Object value) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(value));
+            outputStream.write('\n');
+            if (++written % FLUSH_INTERVAL == 0) {
+                outputStream.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.miniapp.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+// Collects "column = ?" assignments for the fields a partial update actually provides,
+// so the UPDATE statement only touches those columns.
+public class PartialUpdate {
+
+    private final List<String> assignments = new ArrayList<>();
+    private final List<Object> parameters = new ArrayList<>();
+
+
+    // Skips null values, which mean "leave the column as it is"
+    public PartialUpdate set(String column, Object value) {
+        if (value != null) {
+            assignments.add(column + " = ?");
+            parameters.add(value);
+        }
+        return this;
+    }
+
+
+    public boolean isEmpty() {
+        return assignments.isEmpty();
+    }
+
+
+    public String setClause() {
+        return String.join(", ", assignments);
+    }
+
+
+    // The assignment values followed by the given trailing parameters, e.g. the WHERE clause's
+    public Object[] parameters(Object... trailing) {
+        List<Object> all = new ArrayList<>(parameters);
+        all.addAll(List.of(trailing));
+        return all.toArray();
+    }
+}
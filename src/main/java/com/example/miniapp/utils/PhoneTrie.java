@@ -0,0 +1,196 @@
+package com.example.miniapp.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+// Thread-safe trie from phone numbers to customer ids. Each node keeps its children in
+// a sorted char array searched by binary search, which stays compact for the handful
+// of distinct characters phone numbers use, and returns ids in phone number order.
+public class PhoneTrie {
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final long[] NO_IDS = new long[0];
+
+    private final Node root = new Node();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long size;
+
+
+    public void put(String phoneNumber, long id) {
+        if (phoneNumber == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < phoneNumber.length(); i++) {
+                node = node.childOrCreate(phoneNumber.charAt(i));
+            }
+            if (node.addId(id)) {
+                size++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public void remove(String phoneNumber, long id) {
+        if (phoneNumber == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Node[] path = new Node[phoneNumber.length() + 1];
+            path[0] = root;
+            for (int i = 0; i < phoneNumber.length(); i++) {
+                path[i + 1] = path[i].child(phoneNumber.charAt(i));
+                if (path[i + 1] == null) {
+                    return;
+                }
+            }
+            if (!path[phoneNumber.length()].removeId(id)) {
+                return;
+            }
+            size--;
+            // Unlink the nodes that no longer lead to any id
+            for (int i = phoneNumber.length(); i > 0 && path[i].isEmpty(); i--) {
+                path[i - 1].removeChild(phoneNumber.charAt(i - 1));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    // Up to limit ids whose phone number starts with prefix, in phone number then id order
+    public List<Long> findByPrefix(String prefix, int limit) {
+        List<Long> ids = new ArrayList<>(Math.min(limit, 64));
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.child(prefix.charAt(i));
+            }
+            if (node != null) {
+                collect(node, ids, limit);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ids;
+    }
+
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void collect(Node node, List<Long> ids, int limit) {
+        for (long id : node.ids) {
+            if (ids.size() >= limit) {
+                return;
+            }
+            ids.add(id);
+        }
+        for (Node child : node.children) {
+            if (ids.size() >= limit) {
+                return;
+            }
+            collect(child, ids, limit);
+        }
+    }
+
+
+    private static class Node {
+
+        private char[] labels = NO_LABELS;
+        private Node[] children = NO_CHILDREN;
+        // Ids of the customers whose phone number ends at this node, ascending
+        private long[] ids = NO_IDS;
+
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node childOrCreate(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            Node child = new Node();
+            labels = insert(labels, insertAt, label);
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, insertAt);
+            grown[insertAt] = child;
+            System.arraycopy(children, insertAt, grown, insertAt + 1, children.length - insertAt);
+            children = grown;
+            return child;
+        }
+
+        void removeChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index < 0) {
+                return;
+            }
+            char[] shrunkLabels = new char[labels.length - 1];
+            System.arraycopy(labels, 0, shrunkLabels, 0, index);
+            System.arraycopy(labels, index + 1, shrunkLabels, index, labels.length - index - 1);
+            Node[] shrunkChildren = new Node[children.length - 1];
+            System.arraycopy(children, 0, shrunkChildren, 0, index);
+            System.arraycopy(children, index + 1, shrunkChildren, index, children.length - index - 1);
+            labels = shrunkLabels.length == 0 ? NO_LABELS : shrunkLabels;
+            children = shrunkChildren.length == 0 ? NO_CHILDREN : shrunkChildren;
+        }
+
+        boolean addId(long id) {
+            int index = Arrays.binarySearch(ids, id);
+            if (index >= 0) {
+                return false;
+            }
+            int insertAt = -index - 1;
+            long[] grown = new long[ids.length + 1];
+            System.arraycopy(ids, 0, grown, 0, insertAt);
+            grown[insertAt] = id;
+            System.arraycopy(ids, insertAt, grown, insertAt + 1, ids.length - insertAt);
+            ids = grown;
+            return true;
+        }
+
+        boolean removeId(long id) {
+            int index = Arrays.binarySearch(ids, id);
+            if (index < 0) {
+                return false;
+            }
+            long[] shrunk = new long[ids.length - 1];
+            System.arraycopy(ids, 0, shrunk, 0, index);
+            System.arraycopy(ids, index + 1, shrunk, index, ids.length - index - 1);
+            ids = shrunk.length == 0 ? NO_IDS : shrunk;
+            return true;
+        }
+
+        boolean isEmpty() {
+            return ids.length == 0 && children.length == 0;
+        }
+
+        private static char[] insert(char[] array, int index, char value) {
+            char[] grown = new char[array.length + 1];
+            System.arraycopy(array, 0, grown, 0, index);
+            grown[index] = value;
+            System.arraycopy(array, index, grown, index + 1, array.length - index);
+            return grown;
+        }
+    }
+}
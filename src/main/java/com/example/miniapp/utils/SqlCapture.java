@@ -0,0 +1,52 @@
+package com.example.miniapp.utils;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+// Hibernate StatementInspector (registered in Config while query-plan-check is enabled)
+// that records the SQL the current thread sends while inside capture(), leaving every
+// statement unchanged. Outside a capture it costs one read of a counter per statement.
+public class SqlCapture implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final ThreadLocal<List<String>> CAPTURED = new ThreadLocal<>();
+    private static final AtomicInteger ACTIVE_CAPTURES = new AtomicInteger();
+
+
+    // Runs the work and returns the statements Hibernate prepared for it, in order
+    public static List<String> capture(Runnable work) {
+        List<String> previous = CAPTURED.get();
+        List<String> statements = new ArrayList<>();
+        CAPTURED.set(statements);
+        ACTIVE_CAPTURES.incrementAndGet();
+        try {
+            work.run();
+        } finally {
+            ACTIVE_CAPTURES.decrementAndGet();
+            if (previous == null) {
+                CAPTURED.remove();
+            } else {
+                CAPTURED.set(previous);
+            }
+        }
+        return statements;
+    }
+
+
+    @Override
+    public String inspect(String sql) {
+        if (ACTIVE_CAPTURES.get() == 0) {
+            return sql;
+        }
+        List<String> statements = CAPTURED.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+}
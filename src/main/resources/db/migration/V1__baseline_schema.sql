@@ -0,0 +1,36 @@
+-- Schema as previously created by Hibernate (ddl-auto=update). IF NOT EXISTS lets this
+-- run against databases that were already created that way.
+
+CREATE TABLE IF NOT EXISTS captains (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name             VARCHAR(255) NOT NULL,
+    license_number   VARCHAR(255) NOT NULL UNIQUE,
+    avg_rating_score DOUBLE PRECISION
+);
+
+CREATE TABLE IF NOT EXISTS customers (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name         VARCHAR(255) NOT NULL,
+    email        VARCHAR(255) NOT NULL UNIQUE,
+    phone_number VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS trips (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    trip_date   TIMESTAMP(6) NOT NULL,
+    origin      VARCHAR(255) NOT NULL,
+    destination VARCHAR(255) NOT NULL,
+    trip_cost   DOUBLE PRECISION NOT NULL,
+    captain_id  BIGINT REFERENCES captains (id),
+    customer_id BIGINT REFERENCES customers (id)
+);
+
+CREATE TABLE IF NOT EXISTS payments (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    amount         DOUBLE PRECISION NOT NULL,
+    payment_method VARCHAR(255) NOT NULL,
+    payment_status BOOLEAN NOT NULL,
+    trip_id        BIGINT UNIQUE REFERENCES trips (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_captains_avg_rating_score ON captains (avg_rating_score);
@@ -0,0 +1,13 @@
+-- TripRepository.findByTripDateBetween
+CREATE INDEX IF NOT EXISTS idx_trips_trip_date ON trips (trip_date);
+
+-- TripRepository.findByCaptainId / findByCustomerId; trip_date second so a
+-- captain's or customer's trips in a date range come from the same index
+CREATE INDEX IF NOT EXISTS idx_trips_captain_id_trip_date ON trips (captain_id, trip_date);
+CREATE INDEX IF NOT EXISTS idx_trips_customer_id_trip_date ON trips (customer_id, trip_date);
+
+-- PaymentRepository.findByAmountGreaterThan
+CREATE INDEX IF NOT EXISTS idx_payments_amount ON payments (amount);
+
+-- CustomerRepository.findByPhoneNumber
+CREATE INDEX IF NOT EXISTS idx_customers_phone_number ON customers (phone_number);
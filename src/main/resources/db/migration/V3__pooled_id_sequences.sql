@@ -0,0 +1,13 @@
+-- Sequences backing the pooled id generators (allocationSize = 50). Hibernate takes
+-- each nextval as the top of a block of 50 ids, so every sequence starts at least one
+-- block above the ids already in use.
+
+CREATE SEQUENCE IF NOT EXISTS captains_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS customers_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS trips_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS payments_seq START WITH 1 INCREMENT BY 50;
+
+SELECT setval('captains_seq', (SELECT COALESCE(MAX(id), 0) + 51 FROM captains), false);
+SELECT setval('customers_seq', (SELECT COALESCE(MAX(id), 0) + 51 FROM customers), false);
+SELECT setval('trips_seq', (SELECT COALESCE(MAX(id), 0) + 51 FROM trips), false);
+SELECT setval('payments_seq', (SELECT COALESCE(MAX(id), 0) + 51 FROM payments), false);
@@ -0,0 +1,3 @@
+-- CustomerRepository.findByEmailDomain; the expression must match the query exactly.
+-- id second so a domain's customers come back in id order for keyset pagination
+CREATE INDEX IF NOT EXISTS idx_customers_email_domain ON customers (lower(split_part(email, '@', 2)), id);
@@ -0,0 +1,3 @@
+-- CustomerRepository.findByPhoneNumberPrefix; a "C" collation range scan works with bound
+-- parameters, unlike LIKE 'prefix%', and returns phone numbers in the trie's order
+CREATE INDEX IF NOT EXISTS idx_customers_phone_number_prefix ON customers ((phone_number COLLATE "C"), id);
@@ -0,0 +1,76 @@
+-- One-off conversion of trips into a table range-partitioned by month of trip_date.
+-- Not a Flyway migration: it rewrites the whole table, so run it in a maintenance
+-- window, then set trip.partitioning.enabled=true so TripPartitionManager keeps
+-- creating the upcoming months.
+--
+-- What changes:
+--  * The primary key becomes (id, trip_date), since every unique key of a partitioned
+--    table has to contain the partition column. Ids still come from trips_seq.
+--  * payments.trip_id can no longer reference trips, because trips.id alone is not
+--    unique any more. The foreign key is dropped; PaymentService resolves trips itself.
+--  * There is no DEFAULT partition, because it would block DETACH ... CONCURRENTLY.
+--    Trips dated before the first partition need that month created first
+--    (TripPartitionManager.createPartition).
+--  * Hibernate's ddl-auto=update does not understand partitioned tables; set it to
+--    validate or none once trips is partitioned.
+
+BEGIN;
+
+DO $$
+DECLARE
+    fk record;
+BEGIN
+    FOR fk IN
+        SELECT conname FROM pg_constraint
+        WHERE conrelid = 'payments'::regclass AND confrelid = 'trips'::regclass AND contype = 'f'
+    LOOP
+        EXECUTE format('ALTER TABLE payments DROP CONSTRAINT %I', fk.conname);
+    END LOOP;
+END $$;
+
+DROP INDEX IF EXISTS idx_trips_trip_date;
+DROP INDEX IF EXISTS idx_trips_captain_id_trip_date;
+DROP INDEX IF EXISTS idx_trips_customer_id_trip_date;
+ALTER TABLE trips RENAME CONSTRAINT trips_pkey TO trips_unpartitioned_pkey;
+ALTER TABLE trips RENAME TO trips_unpartitioned;
+
+CREATE TABLE trips (
+    id          BIGINT NOT NULL,
+    trip_date   TIMESTAMP(6) NOT NULL,
+    origin      VARCHAR(255) NOT NULL,
+    destination VARCHAR(255) NOT NULL,
+    trip_cost   DOUBLE PRECISION NOT NULL,
+    captain_id  BIGINT REFERENCES captains (id),
+    customer_id BIGINT REFERENCES customers (id),
+    PRIMARY KEY (id, trip_date)
+) PARTITION BY RANGE (trip_date);
+
+-- Created on the parent, so every partition gets its own copy
+CREATE INDEX idx_trips_trip_date ON trips (trip_date);
+CREATE INDEX idx_trips_captain_id_trip_date ON trips (captain_id, trip_date);
+CREATE INDEX idx_trips_customer_id_trip_date ON trips (customer_id, trip_date);
+
+-- One partition per month from the oldest trip to the newest one or three months
+-- from now, whichever is later
+DO $$
+DECLARE
+    month date := date_trunc('month', COALESCE((SELECT MIN(trip_date) FROM trips_unpartitioned), now()));
+    last_month date := date_trunc('month', GREATEST((SELECT MAX(trip_date) FROM trips_unpartitioned),
+                                                    now() + interval '3 months'));
+BEGIN
+    WHILE month <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF trips FOR VALUES FROM (%L) TO (%L)',
+                       'trips_p' || to_char(month, 'YYYY_MM'), month, month + interval '1 month');
+        month := month + interval '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO trips (id, trip_date, origin, destination, trip_cost, captain_id, customer_id)
+SELECT id, trip_date, origin, destination, trip_cost, captain_id, customer_id FROM trips_unpartitioned;
+
+COMMIT;
+
+ANALYZE trips;
+
+-- After checking the row counts match:
+-- DROP TABLE trips_unpartitioned;
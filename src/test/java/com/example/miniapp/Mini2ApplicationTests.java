@@ -194,6 +194,31 @@ class Mini2ApplicationTests {
         assertNotNull(response.getBody());
     }
 
+    @Test
+    public void testControllerDeleteCaptainWithTrips() {
+        Captain captain = captainService.addCaptain(new Captain("Sam Driver", "LC999", 4.0));
+        Trip trip = new Trip(LocalDateTime.now(), "Origin Z", "Destination Z", 80.0);
+        trip.setCaptain(captain);
+        tripService.addTrip(trip);
+        Payment payment = new Payment(80.0, "Cash", true);
+        payment.setTrip(trip);
+        paymentService.addPayment(payment);
+
+        ResponseEntity<String> response = restTemplate.exchange(
+                BASE_URL_CAPTAIN + "/delete/" + captain.getId(),
+                HttpMethod.DELETE,
+                null,
+                String.class
+        );
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("Captain deleted successfully", response.getBody());
+        assertFalse(captainRepository.existsById(captain.getId()));
+        assertTrue(tripRepository.findByCaptainId(captain.getId()).isEmpty());
+        assertEquals(0, paymentRepository.count());
+        assertNull(captainService.getCaptainById(captain.getId()));
+    }
+
     @Test
     public void testControllerGetAllTrips() {
         ResponseEntity<List> response = restTemplate.getForEntity(BASE_URL_TRIP + "/allTrips", List.class);
@@ -0,0 +1,88 @@
+package com.example.miniapp;
+
+import com.example.miniapp.models.Rating;
+import com.example.miniapp.repositories.RatingRepository;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Calls the RatingRepository derived queries with the database profiler on and fails
+// if any read they issue falls back to a collection scan.
+@SpringBootTest
+class RatingIndexUsageTests {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @BeforeEach
+    public void setup() {
+        ratingRepository.deleteAll();
+        for (long entityId = 1; entityId <= 20; entityId++) {
+            for (int score = 1; score <= 5; score++) {
+                ratingRepository.save(new Rating(entityId, entityId % 2 == 0 ? "captain" : "customer", score,
+                        "comment", LocalDateTime.now().minusDays(score)));
+            }
+        }
+    }
+
+    // Profiles every operation while the repository method runs, then checks the plan
+    // each of its reads of the ratings collection actually used
+    private void assertUsesIndex(String method, Runnable invocation) {
+        MongoDatabase database = mongoTemplate.getDb();
+        String namespace = database.getName() + "." + mongoTemplate.getCollectionName(Rating.class);
+
+        database.runCommand(new Document("profile", 0));
+        database.getCollection("system.profile").drop();
+        database.runCommand(new Document("profile", 2));
+        try {
+            invocation.run();
+        } finally {
+            database.runCommand(new Document("profile", 0));
+        }
+
+        List<Document> reads = database.getCollection("system.profile")
+                .find(new Document("ns", namespace).append("op", "query"))
+                .into(new ArrayList<>());
+        assertFalse(reads.isEmpty(), method + " did not read the ratings collection");
+        for (Document read : reads) {
+            String planSummary = read.getString("planSummary");
+            assertNotNull(planSummary, method + " reported no plan: " + read.toJson());
+            assertFalse(planSummary.contains("COLLSCAN"), method + " used " + planSummary);
+            assertTrue(planSummary.contains("IXSCAN"), method + " used " + planSummary);
+        }
+    }
+
+    @Test
+    public void testFindByEntityIdAndEntityTypeUsesIndex() {
+        assertUsesIndex("findByEntityIdAndEntityType",
+                () -> ratingRepository.findByEntityIdAndEntityType(2L, "captain"));
+    }
+
+    @Test
+    public void testFindByEntityTypeUsesIndex() {
+        assertUsesIndex("findByEntityType", () -> ratingRepository.findByEntityType("captain"));
+    }
+
+    @Test
+    public void testFindByScoreGreaterThanEqualUsesIndex() {
+        assertUsesIndex("findByScoreGreaterThanEqual", () -> ratingRepository.findByScoreGreaterThanEqual(4));
+    }
+
+    @Test
+    public void testFindByScoreBetweenUsesIndex() {
+        assertUsesIndex("findByScoreBetween", () -> ratingRepository.findByScoreBetween(1, 4));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.miniapp;
+
+import com.example.miniapp.models.Captain;
+import com.example.miniapp.models.Customer;
+import com.example.miniapp.models.Payment;
+import com.example.miniapp.models.Trip;
+import com.example.miniapp.models.TripSummary;
+import com.example.miniapp.repositories.CaptainRepository;
+import com.example.miniapp.repositories.CustomerRepository;
+import com.example.miniapp.repositories.PaymentRepository;
+import com.example.miniapp.repositories.TripRepository;
+import com.example.miniapp.services.TripService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Checks that the trip listing endpoints run a fixed number of SQL statements
+// however many trips (with captain, customer and payment) they return.
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class TripQueryCountTests {
+
+    @Autowired
+    private TripService tripService;
+    @Autowired
+    private TripRepository tripRepository;
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private CaptainRepository captainRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Captain captain;
+    private Customer customer;
+    private int created;
+
+    @BeforeEach
+    public void setup() {
+        paymentRepository.deleteAll();
+        tripRepository.deleteAll();
+        captainRepository.deleteAll();
+        customerRepository.deleteAll();
+
+        captain = captainRepository.save(new Captain("Count Captain", "COUNT-LIC-1", 4.5));
+        customer = customerRepository.save(new Customer("Count Customer", "count@example.com", "0100000000"));
+        created = 0;
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    private void addTrips(int count) {
+        for (int i = 0; i < count; i++) {
+            created++;
+            Trip trip = tripRepository.save(new Trip(LocalDateTime.now().minusHours(created), "Origin " + created,
+                    "Destination " + created, 10.0 * created, captain, customer));
+            paymentRepository.save(new Payment(10.0 * created, "card", true, trip));
+        }
+    }
+
+    private long countStatements(Supplier<List<TripSummary>> listing, int expectedRows) {
+        statistics.clear();
+        List<TripSummary> trips = listing.get();
+        assertEquals(expectedRows, trips.size());
+        trips.forEach(trip -> assertNotNull(trip.getPaymentId()));
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void assertConstantStatementCount(Supplier<List<TripSummary>> listing) {
+        addTrips(2);
+        long few = countStatements(listing, 2);
+
+        addTrips(20);
+        long many = countStatements(listing, 22);
+
+        assertEquals(1, few);
+        assertEquals(few, many);
+    }
+
+    @Test
+    public void testGetAllTripsStatementCount() {
+        assertConstantStatementCount(() -> tripService.getAllTrips());
+    }
+
+    @Test
+    public void testFindTripsWithinDateRangeStatementCount() {
+        assertConstantStatementCount(() -> tripService.findTripsWithinDateRange(
+                LocalDateTime.now().minusDays(30), LocalDateTime.now()));
+    }
+
+    @Test
+    public void testFindTripsByCaptainIdStatementCount() {
+        assertConstantStatementCount(() -> tripService.findTripsByCaptainId(captain.getId()));
+    }
+}
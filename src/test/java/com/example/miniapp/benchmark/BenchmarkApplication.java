@@ -0,0 +1,78 @@
+package com.example.miniapp.benchmark;
+
+import com.example.miniapp.MiniAppApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The application, without its web server, against throwaway PostgreSQL and MongoDB
+// containers (Docker is required). Benchmarks call the real services on the schema the
+// Flyway migrations build; extra properties are given as "name=value".
+final class BenchmarkApplication implements AutoCloseable {
+
+    private final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+    private final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+    private final ConfigurableApplicationContext context;
+
+    BenchmarkApplication(String... properties) {
+        postgres.start();
+        mongo.start();
+        List<String> args = new ArrayList<>(List.of(
+                "spring.datasource.url=" + postgres.getJdbcUrl(),
+                "spring.datasource.username=" + postgres.getUsername(),
+                "spring.datasource.password=" + postgres.getPassword(),
+                "spring.data.mongodb.host=" + mongo.getHost(),
+                "spring.data.mongodb.port=" + mongo.getMappedPort(27017),
+                "spring.jpa.show-sql=false",
+                "logging.level.com.example.miniapp=WARN",
+                "query-plan-check.enabled=false"));
+        args.addAll(List.of(properties));
+        // As command-line arguments they take precedence over application.properties
+        context = new SpringApplicationBuilder(MiniAppApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.stream().map(arg -> "--" + arg).toArray(String[]::new));
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    JdbcTemplate getJdbcTemplate() {
+        return context.getBean(JdbcTemplate.class);
+    }
+
+    // Captains, customers and trips with ids from 1, each trip with a payment, and the id
+    // sequences moved above them as V3 does
+    void seed(int captains, int customers, int trips) {
+        JdbcTemplate jdbcTemplate = getJdbcTemplate();
+        jdbcTemplate.update("INSERT INTO captains (id, name, license_number, avg_rating_score) "
+                + "SELECT i, 'Captain ' || i, 'LIC-' || i, 1 + random() * 4 FROM generate_series(1, ?) i", captains);
+        jdbcTemplate.update("INSERT INTO customers (id, name, email, phone_number) "
+                + "SELECT i, 'Customer ' || i, 'customer' || i || '@domain' || (i % 100) || '.com', "
+                + "'+1555' || lpad(i::text, 7, '0') FROM generate_series(1, ?) i", customers);
+        jdbcTemplate.update("INSERT INTO trips (id, trip_date, origin, destination, trip_cost, captain_id, customer_id) "
+                + "SELECT i, timestamp '2023-01-01' + i * interval '5 minutes', 'Origin ' || (i % 500), "
+                + "'Destination ' || (i % 700), round((5 + random() * 95)::numeric, 2), 1 + i % ?, 1 + i % ? "
+                + "FROM generate_series(1, ?) i", captains, customers, trips);
+        jdbcTemplate.update("INSERT INTO payments (id, amount, payment_method, payment_status, trip_id) "
+                + "SELECT id, trip_cost, 'card', true, id FROM trips");
+        for (String table : List.of("captains", "customers", "trips", "payments")) {
+            jdbcTemplate.queryForObject("SELECT setval('" + table + "_seq', "
+                    + "(SELECT COALESCE(MAX(id), 0) + 51 FROM " + table + "), false)", Long.class);
+        }
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        mongo.stop();
+        postgres.stop();
+    }
+}
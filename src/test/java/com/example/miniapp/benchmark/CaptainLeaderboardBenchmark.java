@@ -0,0 +1,120 @@
+package com.example.miniapp.benchmark;
+
+import com.example.miniapp.models.Captain;
+import com.example.miniapp.services.CaptainLeaderboard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares CaptainLeaderboard with the repository queries it replaces in CaptainService.
+// Both read the same captains table; it lives in an in-process H2 database, so the
+// query side is measured without the network round trip it pays against Postgres.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CaptainLeaderboardBenchmark {
+
+    private static final RowMapper<Captain> CAPTAIN_MAPPER = (rs, rowNum) -> {
+        Double score = rs.getDouble("avg_rating_score");
+        return new Captain(rs.getLong("id"), rs.getString("name"), rs.getString("license_number"),
+                rs.wasNull() ? null : score);
+    };
+
+    @Param({"1000", "100000"})
+    private int captainCount;
+
+    @Param({"10"})
+    private int k;
+
+    // Only the captains above it are returned, a few percent of them
+    @Param({"4.9"})
+    private double threshold;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private CaptainLeaderboard leaderboard;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:leaderboard;MODE=PostgreSQL", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE captains (id BIGINT PRIMARY KEY, name VARCHAR(255) NOT NULL, "
+                + "license_number VARCHAR(255) NOT NULL UNIQUE, avg_rating_score DOUBLE PRECISION)");
+        jdbcTemplate.execute("CREATE INDEX idx_captains_avg_rating_score ON captains (avg_rating_score)");
+
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>(captainCount);
+        for (long id = 1; id <= captainCount; id++) {
+            // One captain in ten has not been rated yet
+            Double score = random.nextInt(10) == 0 ? null : 1 + random.nextDouble() * 4;
+            rows.add(new Object[]{id, "Captain " + id, "LIC-" + id, score});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO captains (id, name, license_number, avg_rating_score) "
+                + "VALUES (?, ?, ?, ?)", rows);
+
+        leaderboard = new CaptainLeaderboard(jdbcTemplate, true);
+        leaderboard.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+
+    @Benchmark
+    public List<Captain> leaderboardTop() {
+        return leaderboard.top(k);
+    }
+
+    // findByAvgRatingScoreNotNullOrderByAvgRatingScoreDescIdAsc(PageRequest.of(0, k))
+    @Benchmark
+    public List<Captain> queryTop() {
+        return jdbcTemplate.query("SELECT id, name, license_number, avg_rating_score FROM captains "
+                + "WHERE avg_rating_score IS NOT NULL ORDER BY avg_rating_score DESC, id ASC "
+                + "OFFSET 0 ROWS FETCH FIRST ? ROWS ONLY", CAPTAIN_MAPPER, k);
+    }
+
+    @Benchmark
+    public List<Captain> leaderboardAbove() {
+        return leaderboard.findAbove(threshold);
+    }
+
+    // findByAvgRatingScoreGreaterThan(threshold)
+    @Benchmark
+    public List<Captain> queryAbove() {
+        return jdbcTemplate.query("SELECT id, name, license_number, avg_rating_score FROM captains "
+                + "WHERE avg_rating_score > ?", CAPTAIN_MAPPER, threshold);
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CaptainLeaderboardBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
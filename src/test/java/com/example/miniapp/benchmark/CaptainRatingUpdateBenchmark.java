@@ -0,0 +1,115 @@
+package com.example.miniapp.benchmark;
+
+import com.example.miniapp.models.Rating;
+import com.example.miniapp.repositories.CaptainRepository;
+import com.example.miniapp.repositories.RatingRepository;
+import com.example.miniapp.services.RatingAggregateReconciler;
+import com.example.miniapp.services.RatingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Latency of updating one rating's score for a captain with 10, 1k and 100k ratings.
+// RatingService.updateRating folds the change into the captain's rating summary; the
+// average reaches the captains table asynchronously through CaptainRatingPropagator.
+// rescanUpdate is the update it replaced, which read every rating of the captain to
+// recompute the average and saved the captain on each call.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CaptainRatingUpdateBenchmark {
+
+    private static final long CAPTAIN_ID = 1L;
+
+    @Param({"10", "1000", "100000"})
+    private int ratingsPerCaptain;
+
+    private BenchmarkApplication application;
+    private RatingService ratingService;
+    private RatingRepository ratingRepository;
+    private CaptainRepository captainRepository;
+    private List<String> ratingIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = new BenchmarkApplication();
+        application.seed(1, 1, 0);
+        ratingService = application.getBean(RatingService.class);
+        ratingRepository = application.getBean(RatingRepository.class);
+        captainRepository = application.getBean(CaptainRepository.class);
+
+        List<Rating> ratings = new ArrayList<>(ratingsPerCaptain);
+        for (int i = 0; i < ratingsPerCaptain; i++) {
+            ratings.add(new Rating(CAPTAIN_ID, "captain", 1 + i % 5, null, LocalDateTime.now().minusHours(i)));
+        }
+        ratingIds = application.getBean(MongoTemplate.class).insertAll(ratings).stream().map(Rating::getId).toList();
+        // Summaries for the ratings inserted around the service
+        application.getBean(RatingAggregateReconciler.class).reconcileRatingSummaries();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+
+    @Benchmark
+    public Rating incrementalUpdate() {
+        return ratingService.updateRating(randomRatingId(), new Rating(CAPTAIN_ID, "captain", randomScore()));
+    }
+
+    @Benchmark
+    public Rating rescanUpdate() {
+        Rating rating = ratingRepository.findById(randomRatingId()).orElseThrow();
+        rating.setScore(randomScore());
+        Rating saved = ratingRepository.save(rating);
+
+        double average = ratingRepository.findByEntityIdAndEntityType(CAPTAIN_ID, "captain").stream()
+                .mapToInt(Rating::getScore)
+                .average()
+                .orElse(0.0);
+        captainRepository.findById(CAPTAIN_ID).ifPresent(captain -> {
+            captain.setAvgRatingScore(average);
+            captainRepository.save(captain);
+        });
+        return saved;
+    }
+
+    private String randomRatingId() {
+        return ratingIds.get(ThreadLocalRandom.current().nextInt(ratingIds.size()));
+    }
+
+    private static int randomScore() {
+        return ThreadLocalRandom.current().nextInt(1, 6);
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CaptainRatingUpdateBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
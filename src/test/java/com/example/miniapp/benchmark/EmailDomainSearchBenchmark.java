@@ -0,0 +1,96 @@
+package com.example.miniapp.benchmark;
+
+import com.example.miniapp.models.Customer;
+import com.example.miniapp.models.CursorPage;
+import com.example.miniapp.repositories.CustomerRepository;
+import com.example.miniapp.services.CustomerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// First page of GET /customer/findByEmailDomain over 1M customers: the query on the
+// idx_customers_email_domain expression index against a LIKE '%@domain' match, which no
+// b-tree index can serve. Each of the 100 regular domains holds 1% of the customers;
+// rare.example holds one in 10,000, so the LIKE scan reads most of the table to fill a page.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EmailDomainSearchBenchmark {
+
+    private static final RowMapper<Customer> CUSTOMER_MAPPER = new BeanPropertyRowMapper<>(Customer.class);
+
+    @Param({"domain7.com", "rare.example"})
+    private String domain;
+
+    @Param({"100"})
+    private int pageSize;
+
+    private BenchmarkApplication application;
+    private CustomerService customerService;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchMethodException {
+        application = new BenchmarkApplication();
+        application.seed(1, 1_000_000, 0);
+        jdbcTemplate = application.getJdbcTemplate();
+        jdbcTemplate.update("UPDATE customers SET email = 'customer' || id || '@rare.example' WHERE id % 10000 = 0");
+        jdbcTemplate.execute("ANALYZE customers");
+        customerService = application.getBean(CustomerService.class);
+
+        // The SQL the repository sends, with its named parameters as placeholders
+        String sql = CustomerRepository.class.getMethod("findByEmailDomain", String.class, Long.class, int.class)
+                .getAnnotation(Query.class).value().replaceAll(":\\w+", "?");
+        String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, domain, 0L, pageSize));
+        if (!plan.contains("idx_customers_email_domain")) {
+            throw new IllegalStateException("findByEmailDomain does not use idx_customers_email_domain:\n" + plan);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+
+    @Benchmark
+    public CursorPage<Customer> expressionIndex() {
+        return customerService.getCustomersByEmailDomainPage(domain, null, pageSize);
+    }
+
+    @Benchmark
+    public List<Customer> likeScan() {
+        return jdbcTemplate.query("SELECT * FROM customers WHERE email LIKE ? ORDER BY id LIMIT ?", CUSTOMER_MAPPER,
+                "%@" + domain, pageSize);
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EmailDomainSearchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
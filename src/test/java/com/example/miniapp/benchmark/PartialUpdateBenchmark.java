@@ -0,0 +1,82 @@
+package com.example.miniapp.benchmark;
+
+import com.example.miniapp.models.Trip;
+import com.example.miniapp.services.TripService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Throughput of changing one trip's cost from eight threads: TripService.patchTrip
+// (PATCH /trip/{id}), a single UPDATE ... RETURNING, against updateTrip (PUT), which
+// loads the trip with its captain, customer and payment and saves it again. With 100
+// trips the threads keep colliding on the same rows; with 100k they rarely do.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class PartialUpdateBenchmark {
+
+    @Param({"100", "100000"})
+    private int tripCount;
+
+    private BenchmarkApplication application;
+    private TripService tripService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = new BenchmarkApplication();
+        application.seed(1000, 10000, tripCount);
+        tripService = application.getBean(TripService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+
+    @Benchmark
+    public int patch() {
+        return tripService.patchTrip(randomTripId(), costChange());
+    }
+
+    @Benchmark
+    public Trip loadThenSave() {
+        return tripService.updateTrip(randomTripId(), costChange());
+    }
+
+    private long randomTripId() {
+        return ThreadLocalRandom.current().nextLong(1, tripCount + 1);
+    }
+
+    private static Trip costChange() {
+        return new Trip(null, null, null, ThreadLocalRandom.current().nextInt(500, 10000) / 100.0);
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PartialUpdateBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.miniapp.benchmark;
+
+import com.example.miniapp.models.Trip;
+import com.example.miniapp.services.TripService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Time to insert 100k trips: pooled sequence ids with batched saves (TripService.addTrips)
+// against the IDENTITY ids and per-row saves they replaced. With IDENTITY, Hibernate has to
+// run every INSERT on its own to read the generated id back, and addTrip committed each
+// trip separately; identityPerRowSaves issues exactly those statements and transactions
+// against the identity default the id columns still have. The in-memory statistics and
+// customer summaries that addTrips also updates are switched off, so only the inserts count.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TripBulkInsertBenchmark {
+
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+    @Param({"100000"})
+    private int tripCount;
+
+    private BenchmarkApplication application;
+    private TripService tripService;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private List<Trip> trips;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = new BenchmarkApplication(
+                "trip.histogram.enabled=false",
+                "captain.stats.enabled=false",
+                "customer.summary.enabled=false");
+        tripService = application.getBean(TripService.class);
+        jdbcTemplate = application.getJdbcTemplate();
+        transactionTemplate = new TransactionTemplate(application.getBean(PlatformTransactionManager.class));
+    }
+
+    // Fresh entities every time, since saving assigns their ids
+    @Setup(Level.Invocation)
+    public void prepareTrips() {
+        jdbcTemplate.execute("TRUNCATE trips CASCADE");
+        trips = new ArrayList<>(tripCount);
+        for (int i = 0; i < tripCount; i++) {
+            trips.add(new Trip(START.plusMinutes(i), "Origin " + i % 500, "Destination " + i % 700, 5.0 + i % 95));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+
+    @Benchmark
+    public List<Trip> sequenceBatchedSaves() {
+        return tripService.addTrips(trips);
+    }
+
+    @Benchmark
+    public long identityPerRowSaves() {
+        long lastId = 0;
+        for (Trip trip : trips) {
+            Long id = transactionTemplate.execute(status -> {
+                KeyHolder keyHolder = new GeneratedKeyHolder();
+                jdbcTemplate.update(connection -> {
+                    PreparedStatement statement = connection.prepareStatement("INSERT INTO trips "
+                            + "(trip_date, origin, destination, trip_cost) VALUES (?, ?, ?, ?)", new String[]{"id"});
+                    statement.setTimestamp(1, Timestamp.valueOf(trip.getTripDate()));
+                    statement.setString(2, trip.getOrigin());
+                    statement.setString(3, trip.getDestination());
+                    statement.setDouble(4, trip.getTripCost());
+                    return statement;
+                }, keyHolder);
+                return keyHolder.getKey().longValue();
+            });
+            lastId = id;
+        }
+        return lastId;
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TripBulkInsertBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
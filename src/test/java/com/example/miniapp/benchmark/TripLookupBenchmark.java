@@ -0,0 +1,75 @@
+package com.example.miniapp.benchmark;
+
+import com.example.miniapp.models.Trip;
+import com.example.miniapp.services.TripService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Throughput of TripService.getTripById (GET /trip/{id}) with Hibernate's second-level
+// cache for captains and customers on and off. Trips are picked at random, so their
+// captains and customers repeat and are served from the cache once warmed up.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class TripLookupBenchmark {
+
+    @Param({"false", "true"})
+    private boolean secondLevelCache;
+
+    @Param({"100000"})
+    private int tripCount;
+
+    private BenchmarkApplication application;
+    private TripService tripService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = new BenchmarkApplication(
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=" + secondLevelCache,
+                "spring.jpa.properties.hibernate.cache.use_query_cache=" + secondLevelCache);
+        application.seed(1000, 10000, tripCount);
+        tripService = application.getBean(TripService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+
+    @Benchmark
+    public String getTripById() {
+        Trip trip = tripService.getTripById(ThreadLocalRandom.current().nextLong(1, tripCount + 1));
+        // What the controller serializes besides the trip itself
+        return trip.getCaptain().getName() + trip.getCustomer().getName();
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TripLookupBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.miniapp.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Trip and captain writes that commit while the statistics are rebuilt: trips are
+// counted once whichever side of the rebuild's snapshot they commit on, and a captain
+// removed after the snapshot does not come back with it
+class CaptainTripStatisticsTests {
+
+    private static final long CAPTAIN_ID = 7L;
+    private static final LocalDateTime TRIP_DATE = LocalDateTime.of(2024, 3, 1, 10, 0);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    // Trips of the captain committed to the trips table, and how many the last snapshot saw
+    private final AtomicLong committedTrips = new AtomicLong();
+    private final AtomicLong snapshotTrips = new AtomicLong();
+    private volatile CountDownLatch loadStarted = new CountDownLatch(0);
+    private volatile CountDownLatch loadCanFinish = new CountDownLatch(0);
+
+    private CaptainTripStatistics statistics;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        when(jdbcTemplate.queryForObject("SELECT 1", Integer.class)).thenAnswer(invocation -> {
+            snapshotTrips.set(committedTrips.get());
+            return 1;
+        });
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong("captain_id")).thenReturn(CAPTAIN_ID);
+        when(row.getLong("trips")).thenAnswer(invocation -> snapshotTrips.get());
+        when(row.getDouble("cost")).thenAnswer(invocation -> snapshotTrips.get() * 10.0);
+        when(row.getLong("paid")).thenReturn(0L);
+        when(row.getTimestamp("last_trip")).thenReturn(Timestamp.valueOf(TRIP_DATE));
+        doAnswer(invocation -> {
+            loadStarted.countDown();
+            assertTrue(loadCanFinish.await(5, TimeUnit.SECONDS));
+            if (snapshotTrips.get() > 0) {
+                invocation.getArgument(1, RowCallbackHandler.class).processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT t.captain_id"), any(RowCallbackHandler.class));
+
+        statistics = new CaptainTripStatistics(jdbcTemplate, mock(PlatformTransactionManager.class),
+                mock(TripArchive.class), true);
+        statistics.rebuild();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // A transaction that adds one trip of the captain, up to and including its commit
+    private void commitTripAdded() {
+        TransactionSynchronizationManager.initSynchronization();
+        statistics.recordTripAdded(CAPTAIN_ID, TRIP_DATE, 10.0, false);
+        TransactionSynchronizationUtils.triggerBeforeCommit(false);
+        committedTrips.incrementAndGet();
+    }
+
+    // What runs once the transaction has committed
+    private void completeCommit() {
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue(System.nanoTime() < deadline, "Rebuild never waited, state " + thread.getState());
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testTripCommittedBeforeSnapshotIsCountedOnce() throws Exception {
+        commitTripAdded();
+        Thread rebuild = new Thread(statistics::rebuild);
+        rebuild.start();
+        // It cannot take its snapshot until the committed write has updated the counters
+        awaitWaiting(rebuild);
+        completeCommit();
+        rebuild.join(5000);
+
+        assertFalse(rebuild.isAlive());
+        assertEquals(1, snapshotTrips.get());
+        assertEquals(1, statistics.getStatistics(CAPTAIN_ID).getTripCount());
+    }
+
+    @Test
+    public void testTripCommittedAfterSnapshotIsCounted() throws Exception {
+        loadStarted = new CountDownLatch(1);
+        loadCanFinish = new CountDownLatch(1);
+        Thread rebuild = new Thread(statistics::rebuild);
+        rebuild.start();
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        commitTripAdded();
+        completeCommit();
+        loadCanFinish.countDown();
+        rebuild.join(5000);
+
+        assertFalse(rebuild.isAlive());
+        assertEquals(0, snapshotTrips.get());
+        assertEquals(1, statistics.getStatistics(CAPTAIN_ID).getTripCount());
+    }
+
+    @Test
+    public void testCaptainRemovedAfterSnapshotIsDropped() throws Exception {
+        commitTripAdded();
+        completeCommit();
+        loadStarted = new CountDownLatch(1);
+        loadCanFinish = new CountDownLatch(1);
+        Thread rebuild = new Thread(statistics::rebuild);
+        rebuild.start();
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        // The snapshot still has the captain's trip
+        statistics.recordCaptainsRemoved(List.of(CAPTAIN_ID));
+        loadCanFinish.countDown();
+        rebuild.join(5000);
+
+        assertFalse(rebuild.isAlive());
+        assertEquals(1, snapshotTrips.get());
+        assertEquals(0, statistics.getStatistics(CAPTAIN_ID).getTripCount());
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.Customer;
+import com.example.miniapp.models.CustomerSummary;
+import com.example.miniapp.models.Trip;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Trips committed while a slice of customer summaries is rebuilt: each ends up in the
+// replaced summary once, whichever side of the slice's snapshot it commits on
+class CustomerSummaryServiceTests {
+
+    private static final long CUSTOMER_ID = 3L;
+    private static final LocalDateTime TRIP_DATE = LocalDateTime.of(2024, 3, 1, 10, 0);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulkOperations = mock(BulkOperations.class);
+    // Trips of the customer committed to the trips table, and how many the last snapshot saw
+    private final AtomicLong committedTrips = new AtomicLong();
+    private final AtomicLong snapshotTrips = new AtomicLong();
+    private final CountDownLatch loadStarted = new CountDownLatch(1);
+    private final CountDownLatch loadCanFinish = new CountDownLatch(1);
+
+    private CustomerSummaryService summaries;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT GREATEST"), eq(Long.class))).thenReturn(CUSTOMER_ID);
+        when(jdbcTemplate.queryForObject("SELECT 1", Integer.class)).thenAnswer(invocation -> {
+            snapshotTrips.set(committedTrips.get());
+            return 1;
+        });
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong("customer_id")).thenReturn(CUSTOMER_ID);
+        when(row.getLong("trips")).thenAnswer(invocation -> snapshotTrips.get());
+        when(row.getDouble("cost")).thenAnswer(invocation -> snapshotTrips.get() * 10.0);
+        when(row.getDouble("paid")).thenReturn(0.0);
+        when(row.getTimestamp("first_trip")).thenReturn(Timestamp.valueOf(TRIP_DATE));
+        when(row.getTimestamp("last_trip")).thenReturn(Timestamp.valueOf(TRIP_DATE));
+        doAnswer(invocation -> {
+            loadStarted.countDown();
+            assertTrue(loadCanFinish.await(5, TimeUnit.SECONDS));
+            if (snapshotTrips.get() > 0) {
+                invocation.getArgument(1, RowCallbackHandler.class).processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT t.customer_id, COUNT(*)"), any(RowCallbackHandler.class),
+                any(), any());
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(CustomerSummary.class)))
+                .thenReturn(bulkOperations);
+
+        summaries = new CustomerSummaryService(mongoTemplate, jdbcTemplate, mock(PlatformTransactionManager.class),
+                mock(TripArchive.class), true, 1, 10);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // A transaction that adds one trip of the customer, up to and including its commit
+    private void commitTripAdded() {
+        Trip trip = new Trip(TRIP_DATE, "Origin", "Destination", 10.0);
+        trip.setCustomer(new Customer(CUSTOMER_ID, "Customer", "customer@example.com", "+15550000003"));
+        TransactionSynchronizationManager.initSynchronization();
+        summaries.recordTripAdded(trip);
+        TransactionSynchronizationUtils.triggerBeforeCommit(false);
+        committedTrips.incrementAndGet();
+    }
+
+    // What runs once the transaction has committed
+    private void completeCommit() {
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private CustomerSummary replacedSummary() {
+        ArgumentCaptor<Object> replacement = ArgumentCaptor.forClass(Object.class);
+        verify(bulkOperations).replaceOne(any(Query.class), replacement.capture(), any(FindAndReplaceOptions.class));
+        return (CustomerSummary) replacement.getValue();
+    }
+
+    // Waits until a slice thread of the rebuild is parked, as on the lock before its snapshot
+    private static void awaitSliceWaiting() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Thread.getAllStackTraces().entrySet().stream().noneMatch(thread ->
+                thread.getKey().getState() == Thread.State.WAITING && Arrays.stream(thread.getValue())
+                        .anyMatch(frame -> frame.getMethodName().equals("rebuildSlice")))) {
+            assertTrue(System.nanoTime() < deadline, "No slice of the rebuild waited");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testTripCommittedBeforeSnapshotIsCountedOnce() throws Exception {
+        loadCanFinish.countDown();
+        commitTripAdded();
+        Thread rebuild = new Thread(summaries::rebuild);
+        rebuild.start();
+        // The slice cannot take its snapshot until the committed write is applied
+        awaitSliceWaiting();
+        completeCommit();
+        rebuild.join(5000);
+
+        assertFalse(rebuild.isAlive());
+        assertEquals(1, snapshotTrips.get());
+        assertEquals(1, replacedSummary().getTripCount());
+    }
+
+    @Test
+    public void testTripCommittedAfterSnapshotIsKeptByTheReplace() throws Exception {
+        Thread rebuild = new Thread(summaries::rebuild);
+        rebuild.start();
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        commitTripAdded();
+        completeCommit();
+        loadCanFinish.countDown();
+        rebuild.join(5000);
+
+        assertFalse(rebuild.isAlive());
+        assertEquals(0, snapshotTrips.get());
+        CustomerSummary summary = replacedSummary();
+        assertEquals(1, summary.getTripCount());
+        assertEquals(10.0, summary.getTotalTripCost());
+        assertEquals(TRIP_DATE, summary.getLastTripDate());
+        assertEquals(1L, summary.getOrigins().get("Origin"));
+    }
+}
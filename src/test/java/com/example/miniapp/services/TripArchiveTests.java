@@ -0,0 +1,149 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.TripSummary;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+// Segment format of the trip archive: what is written can be read back after a restart,
+// a segment whose index was never written is ignored, and delete markers are kept.
+class TripArchiveTests {
+
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    // Only consulted for segments whose delete was not recorded; no trip is in Postgres here
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @TempDir
+    private Path directory;
+
+    // A freshly started archive over the directory, as after a restart
+    private TripArchive openArchive() {
+        TripArchive archive = new TripArchive(objectMapper, jdbcTemplate, directory.toString(), true);
+        archive.loadIndexes();
+        return archive;
+    }
+
+    // Trips with ids from..to, one hour apart, in random order
+    private static List<TripSummary> trips(long from, long to) {
+        List<TripSummary> trips = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            trips.add(new TripSummary(id, START.plusHours(id), "Origin " + id, "Destination " + id, id * 1.5,
+                    id % 7, "Captain " + id % 7, id % 11, "Customer " + id % 11, id, id * 1.5, "cash", id % 2 == 0));
+        }
+        Collections.shuffle(trips, new Random(42));
+        return trips;
+    }
+
+    private static List<Long> ids(List<TripSummary> trips) {
+        return trips.stream().map(TripSummary::getId).sorted().toList();
+    }
+
+    @Test
+    public void testTripsReadBackAfterRestart() {
+        Path segment = openArchive().append(trips(1, 2500));
+        assertTrue(Files.exists(segment));
+
+        TripArchive archive = openArchive();
+
+        TripSummary trip = archive.findById(1500L);
+        assertNotNull(trip);
+        assertEquals(START.plusHours(1500), trip.getTripDate());
+        assertEquals("Origin 1500", trip.getOrigin());
+        assertEquals("Destination 1500", trip.getDestination());
+        assertEquals(2250.0, trip.getTripCost());
+        assertEquals(2L, trip.getCaptainId());
+        assertEquals("Customer 4", trip.getCustomerName());
+        assertEquals(1500L, trip.getPaymentId());
+        assertEquals("cash", trip.getPaymentMethod());
+        assertEquals(Boolean.TRUE, trip.getPaymentStatus());
+
+        assertNotNull(archive.findById(1L));
+        assertNotNull(archive.findById(2500L));
+        assertNull(archive.findById(2501L));
+        assertEquals(List.of(segment), archive.getUndeletedSegments());
+        assertEquals(ids(trips(1, 2500)), archive.getIds(segment).stream().sorted().toList());
+    }
+
+    @Test
+    public void testDateRangeSpansBlocks() {
+        openArchive().append(trips(1, 2500));
+        TripArchive archive = openArchive();
+
+        // Blocks hold 1000 trips each, so this range starts in the first and ends in the second
+        List<TripSummary> found = archive.findByTripDateBetween(START.plusHours(990), START.plusHours(1010));
+
+        assertEquals(ids(trips(990, 1010)), ids(found));
+        assertTrue(archive.overlapsArchive(START.plusHours(2500)));
+        assertFalse(archive.overlapsArchive(START.plusHours(2501)));
+    }
+
+    @Test
+    public void testSegmentWithoutIndexIsIgnored() throws Exception {
+        Path segment = openArchive().append(trips(1, 100));
+        // A run that stopped after writing the blocks but before the index
+        Files.delete(segment.resolveSibling(segment.getFileName().toString().replace(".seg", ".idx")));
+
+        TripArchive archive = openArchive();
+
+        assertNull(archive.findById(50L));
+        assertTrue(archive.findByTripDateBetween(START, START.plusHours(100)).isEmpty());
+        assertTrue(archive.getUndeletedSegments().isEmpty());
+        assertFalse(archive.overlapsArchive(START));
+    }
+
+    @Test
+    public void testDeleteMarkerIsKeptAcrossRestarts() {
+        Path segment = openArchive().append(trips(1, 100));
+        openArchive().markDeleted(segment);
+
+        TripArchive archive = openArchive();
+        List<TripSummary> archived = new ArrayList<>();
+        archive.forEachArchived(archived::add);
+
+        assertTrue(archive.getUndeletedSegments().isEmpty());
+        assertEquals(ids(trips(1, 100)), ids(archived));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    public void testTripsArchivedByTwoRunsAreVisitedOnce() {
+        TripArchive archive = openArchive();
+        // The first run stopped before deleting its trips, so the next one archived them again
+        archive.append(trips(1, 100));
+        archive.append(trips(51, 150));
+
+        List<TripSummary> archived = new ArrayList<>();
+        openArchive().forEachArchived(archived::add);
+
+        assertEquals(ids(trips(1, 150)), ids(archived));
+    }
+
+    @Test
+    public void testSegmentsAppendedBackToBackGetTheirOwnFiles() {
+        TripArchive archive = openArchive();
+        List<Path> appended = new ArrayList<>();
+        for (long from = 1; from <= 50; from += 10) {
+            appended.add(archive.append(trips(from, from + 9)));
+        }
+        // Also after a restart, while the numbers in use may still be ahead of the clock
+        appended.add(openArchive().append(trips(51, 60)));
+
+        assertEquals(appended.size(), appended.stream().distinct().count());
+        assertEquals(appended, openArchive().getUndeletedSegments());
+    }
+}
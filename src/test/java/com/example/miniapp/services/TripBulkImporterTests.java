@@ -0,0 +1,38 @@
+package com.example.miniapp.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// CSV line splitting used by trip file imports
+class TripBulkImporterTests {
+
+    @Test
+    public void testSplitsPlainValues() {
+        assertEquals(List.of("2024-01-01T10:00", "Cairo", "Giza", "120.5"),
+                TripBulkImporter.splitCsv("2024-01-01T10:00,Cairo,Giza,120.5"));
+    }
+
+    @Test
+    public void testKeepsEmptyValues() {
+        assertEquals(List.of("", "Cairo", "", ""), TripBulkImporter.splitCsv(",Cairo,,"));
+    }
+
+    @Test
+    public void testQuotedValueMayContainCommas() {
+        assertEquals(List.of("Nasr City, Cairo", "Giza"), TripBulkImporter.splitCsv("\"Nasr City, Cairo\",Giza"));
+    }
+
+    @Test
+    public void testDoubledQuoteIsALiteralQuote() {
+        assertEquals(List.of("The \"Pyramids\" gate", "Giza"),
+                TripBulkImporter.splitCsv("\"The \"\"Pyramids\"\" gate\",Giza"));
+    }
+
+    @Test
+    public void testQuotedEmptyValue() {
+        assertEquals(List.of("", "Giza"), TripBulkImporter.splitCsv("\"\",Giza"));
+    }
+}
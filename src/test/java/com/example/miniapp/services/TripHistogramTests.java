@@ -0,0 +1,135 @@
+package com.example.miniapp.services;
+
+import com.example.miniapp.models.TripVolumeBucket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Trip writes that commit while the histogram is rebuilt: each is counted once, whether
+// its commit lands before or after the snapshot the rebuild reads
+class TripHistogramTests {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2024, 3, 1, 10, 0);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    // Trips committed to the trips table, all in HOUR, and how many the last snapshot saw
+    private final AtomicLong committedTrips = new AtomicLong();
+    private final AtomicLong snapshotTrips = new AtomicLong();
+    private volatile CountDownLatch loadStarted = new CountDownLatch(0);
+    private volatile CountDownLatch loadCanFinish = new CountDownLatch(0);
+
+    private TripHistogram histogram;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        when(jdbcTemplate.queryForObject("SELECT 1", Integer.class)).thenAnswer(invocation -> {
+            snapshotTrips.set(committedTrips.get());
+            return 1;
+        });
+        ResultSet row = mock(ResultSet.class);
+        when(row.getTimestamp("hour")).thenReturn(Timestamp.valueOf(HOUR));
+        when(row.getLong("trips")).thenAnswer(invocation -> snapshotTrips.get());
+        when(row.getDouble("cost")).thenAnswer(invocation -> snapshotTrips.get() * 10.0);
+        doAnswer(invocation -> {
+            loadStarted.countDown();
+            assertTrue(loadCanFinish.await(5, TimeUnit.SECONDS));
+            if (snapshotTrips.get() > 0) {
+                invocation.getArgument(1, RowCallbackHandler.class).processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT date_trunc('hour'"), any(RowCallbackHandler.class));
+
+        histogram = new TripHistogram(jdbcTemplate, mock(PlatformTransactionManager.class), mock(TripArchive.class),
+                true);
+        histogram.rebuild();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // A transaction that adds one trip, up to and including its commit
+    private void commitTripAdded() {
+        TransactionSynchronizationManager.initSynchronization();
+        histogram.recordAdded(HOUR.plusMinutes(30), 10.0);
+        TransactionSynchronizationUtils.triggerBeforeCommit(false);
+        committedTrips.incrementAndGet();
+    }
+
+    // What runs once the transaction above has committed
+    private void completeCommit() {
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private long tripsInHour() {
+        return histogram.getHistogram(HOUR, HOUR.plusHours(1), TripHistogram.Bucket.HOUR).stream()
+                .mapToLong(TripVolumeBucket::getTripCount)
+                .sum();
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue(System.nanoTime() < deadline, "Rebuild never waited, state " + thread.getState());
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testWriteCommittedBeforeSnapshotIsCountedOnce() throws Exception {
+        commitTripAdded();
+        Thread rebuild = new Thread(histogram::rebuild);
+        rebuild.start();
+        // It cannot take its snapshot until the committed write has updated the counters
+        awaitWaiting(rebuild);
+        completeCommit();
+        rebuild.join(5000);
+
+        assertFalse(rebuild.isAlive());
+        assertEquals(1, snapshotTrips.get());
+        assertEquals(1, tripsInHour());
+    }
+
+    @Test
+    public void testWriteCommittedAfterSnapshotIsCounted() throws Exception {
+        loadStarted = new CountDownLatch(1);
+        loadCanFinish = new CountDownLatch(1);
+        Thread rebuild = new Thread(histogram::rebuild);
+        rebuild.start();
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        commitTripAdded();
+        completeCommit();
+        loadCanFinish.countDown();
+        rebuild.join(5000);
+
+        assertFalse(rebuild.isAlive());
+        assertEquals(0, snapshotTrips.get());
+        assertEquals(1, tripsInHour());
+    }
+}
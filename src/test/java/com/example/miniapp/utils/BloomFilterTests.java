@@ -0,0 +1,53 @@
+package com.example.miniapp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Membership guarantees and measured false-positive rate of the Bloom filter
+class BloomFilterTests {
+
+    private static final int KEYS = 100_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @Test
+    public void testEveryAddedKeyMightBeContained() {
+        BloomFilter filter = BloomFilter.create(KEYS, FALSE_POSITIVE_RATE);
+        for (int i = 0; i < KEYS; i++) {
+            filter.put("customer" + i + "@example.com");
+        }
+
+        for (int i = 0; i < KEYS; i++) {
+            assertTrue(filter.mightContain("customer" + i + "@example.com"));
+        }
+        assertEquals(KEYS, filter.getInsertions());
+    }
+
+    @Test
+    public void testFalsePositiveRateStaysNearTheRequestedRate() {
+        BloomFilter filter = BloomFilter.create(KEYS, FALSE_POSITIVE_RATE);
+        for (int i = 0; i < KEYS; i++) {
+            filter.put("customer" + i + "@example.com");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < KEYS; i++) {
+            if (filter.mightContain("other" + i + "@example.org")) {
+                falsePositives++;
+            }
+        }
+
+        double measured = (double) falsePositives / KEYS;
+        // Generous bound: the measured rate varies with the keys, not with the run
+        assertTrue(measured < FALSE_POSITIVE_RATE * 1.5, "False-positive rate was " + measured);
+        assertEquals(FALSE_POSITIVE_RATE, filter.expectedFalsePositiveRate(), FALSE_POSITIVE_RATE * 0.2);
+    }
+
+    @Test
+    public void testEmptyFilterContainsNothing() {
+        BloomFilter filter = BloomFilter.create(1000, FALSE_POSITIVE_RATE);
+
+        assertFalse(filter.mightContain("customer@example.com"));
+        assertEquals(0.0, filter.expectedFalsePositiveRate());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.miniapp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Prefix lookups, ordering and removal of the customer phone number trie
+class PhoneTrieTests {
+
+    @Test
+    public void testFindByPrefixReturnsPhoneNumberThenIdOrder() {
+        PhoneTrie trie = new PhoneTrie();
+        trie.put("0102", 5L);
+        trie.put("0100", 9L);
+        trie.put("0100", 3L);
+        trie.put("0111", 1L);
+        trie.put("0200", 2L);
+
+        assertEquals(List.of(3L, 9L, 5L, 1L), trie.findByPrefix("01", 10));
+        assertEquals(List.of(3L, 9L, 5L), trie.findByPrefix("010", 10));
+        assertEquals(List.of(3L, 9L, 5L, 1L, 2L), trie.findByPrefix("", 10));
+        assertEquals(List.of(), trie.findByPrefix("03", 10));
+        assertEquals(List.of(), trie.findByPrefix("01000", 10));
+    }
+
+    @Test
+    public void testFindByPrefixStopsAtLimit() {
+        PhoneTrie trie = new PhoneTrie();
+        for (long id = 1; id <= 10; id++) {
+            trie.put("010" + id, id);
+        }
+
+        assertEquals(List.of(1L, 10L, 2L), trie.findByPrefix("010", 3));
+    }
+
+    @Test
+    public void testPutIsIdempotent() {
+        PhoneTrie trie = new PhoneTrie();
+        trie.put("0100", 1L);
+        trie.put("0100", 1L);
+
+        assertEquals(1, trie.size());
+        assertEquals(List.of(1L), trie.findByPrefix("0100", 10));
+    }
+
+    @Test
+    public void testRemoveKeepsOtherIdsAndNumbers() {
+        PhoneTrie trie = new PhoneTrie();
+        trie.put("0100", 1L);
+        trie.put("0100", 2L);
+        trie.put("01001", 3L);
+
+        trie.remove("0100", 1L);
+
+        assertEquals(2, trie.size());
+        assertEquals(List.of(2L, 3L), trie.findByPrefix("0100", 10));
+    }
+
+    @Test
+    public void testRemoveUnlinksEmptyBranches() {
+        PhoneTrie trie = new PhoneTrie();
+        trie.put("0100", 1L);
+        trie.put("0199", 2L);
+
+        trie.remove("0199", 2L);
+        trie.put("019", 3L);
+
+        assertEquals(List.of(1L, 3L), trie.findByPrefix("01", 10));
+        assertEquals(List.of(3L), trie.findByPrefix("019", 10));
+        assertEquals(List.of(), trie.findByPrefix("0199", 10));
+    }
+
+    @Test
+    public void testRemoveOfUnknownEntryChangesNothing() {
+        PhoneTrie trie = new PhoneTrie();
+        trie.put("0100", 1L);
+
+        trie.remove("0100", 2L);
+        trie.remove("0101", 1L);
+        trie.remove("01000", 1L);
+        trie.remove(null, 1L);
+
+        assertEquals(1, trie.size());
+        assertEquals(List.of(1L), trie.findByPrefix("0", 10));
+    }
+}